@@ -8,7 +8,9 @@ import net.geertvos.gvm.program.GVMContext;
 import net.geertvos.gvm.program.GVMHeap;
 
 /**
- * Wrapper to allow the GVM to execute a 'native' method
+ * Wrapper to allow the GVM to execute a 'native' method. In parallel mode the native runs inside the safepoint of its
+ * thread, so the garbage collector waits for it. A native that blocks must wrap the blocking part in
+ * {@link net.geertvos.gvm.core.GVM#callBlocking(java.util.concurrent.Callable)}.
  * @author geert
  *
  */
@@ -0,0 +1,68 @@
+package net.geertvos.gvm.core;
+
+/**
+ * Base class for types. The supported operations are stored as a bitmask and every type gets a numeric id when it is
+ * registered with a program, so supportsOperation is a single bit test and isInstance a single int compare. The id
+ * belongs to the type name, so instances with the same name are instances of each other, as with a name compare.
+ * Types that implement the Type interface directly keep working, they are compared by name.
+ *
+ * @author geertvos
+ *
+ */
+public abstract class AbstractType implements Type {
+
+	public static final int UNREGISTERED = -1;
+
+	private final long operations;
+	private volatile int typeId;
+
+	/**
+	 * Create a type that gets its id when it is registered.
+	 * @param operations The supported operations
+	 */
+	protected AbstractType(Operations... operations) {
+		this(UNREGISTERED, operations);
+	}
+
+	/**
+	 * Create a type with a fixed id. Used by the built-in types, so every instance of them has the same id.
+	 */
+	protected AbstractType(int typeId, Operations... operations) {
+		long mask = 0;
+		for (Operations op : operations) {
+			mask |= op.mask();
+		}
+		this.operations = mask;
+		this.typeId = typeId;
+	}
+
+	public int getTypeId() {
+		return typeId;
+	}
+
+	/**
+	 * Assign the id, called by GVMProgram.registerType. A type keeps the first id it gets.
+	 */
+	public void assignTypeId(int typeId) {
+		if (this.typeId == UNREGISTERED) {
+			this.typeId = typeId;
+		}
+	}
+
+	@Override
+	public boolean supportsOperation(Operations op) {
+		return (operations & op.mask()) != 0;
+	}
+
+	@Override
+	public boolean isInstance(Type otherType) {
+		if (otherType instanceof AbstractType) {
+			int otherId = ((AbstractType) otherType).typeId;
+			if (typeId != UNREGISTERED && otherId != UNREGISTERED) {
+				return typeId == otherId;
+			}
+		}
+		return otherType.getName().equals(getName());
+	}
+
+}
@@ -2,56 +2,48 @@ package net.geertvos.gvm.core;
 
 import net.geertvos.gvm.program.GVMContext;
 
-public class BooleanType implements Type {
+public class BooleanType extends AbstractType {
 
-	@Override
-	public String getName() {
-		return "Boolean";
+	public static final int TYPE_ID = 0;
+	public static final BooleanType INSTANCE = new BooleanType();
+
+	public BooleanType() {
+		super(TYPE_ID, Operations.NOT, Operations.AND, Operations.OR, Operations.EQL);
 	}
 
 	@Override
-	public boolean supportsOperation(Operations op) {
-		if (op.equals(Operations.NOT)) {
-			return true;
-		}
-		if (op.equals(Operations.AND)) {
-			return true;
-		}
-		if (op.equals(Operations.OR)) {
-			return true;
-		}
-		if (op.equals(Operations.EQL)) {
-			return true;
-		}
-		return false;
+	public String getName() {
+		return "Boolean";
 	}
 
 	@Override
 	public Value perform(GVMContext context, Operations op, Value thisValue, Value otherValue) {
 		if (op.equals(Operations.NOT)) {
-			if (thisValue.getValue() > 0) {
-				return new Value(0, new BooleanType());
-			} else {
-				return new Value(1, new BooleanType());
-			}
+			return Value.valueOf(thisValue.getValue() <= 0);
 		} else if (op.equals(Operations.AND)) {
-			return new Value((thisValue.getValue()>0 && otherValue.getValue()>0)?1:0, new BooleanType());
+			return Value.valueOf(thisValue.getValue()>0 && otherValue.getValue()>0);
 		} else if (op.equals(Operations.OR)) {
-			return new Value((thisValue.getValue()>0 || otherValue.getValue()>0)?1:0, new BooleanType());
+			return Value.valueOf(thisValue.getValue()>0 || otherValue.getValue()>0);
 		} else if (op.equals(Operations.EQL)) {
 			//TODO: Type checking required
-			return new Value((thisValue.getValue()>0 == otherValue.getValue()>0)?1:0, new BooleanType());
+			return Value.valueOf(thisValue.getValue()>0 == otherValue.getValue()>0);
 		} else {
 			throw new IllegalArgumentException("Operation " + op + " is not supported by type " + getName());
 		}
 	}
 
 	@Override
-	public boolean isInstance(Type otherType) {
-		if(otherType.getName().equals(getName())) {
-			return true;
+	public QuickOperation quicken(Operations op, Type otherType) {
+		switch (op) {
+		case AND:
+			return QuickOperation.of(this, (a, b) -> a > 0 && b > 0 ? 1 : 0);
+		case OR:
+			return QuickOperation.of(this, (a, b) -> a > 0 || b > 0 ? 1 : 0);
+		case EQL:
+			return QuickOperation.of(this, (a, b) -> a > 0 == b > 0 ? 1 : 0);
+		default:
+			return null;
 		}
-		return false;
 	}
 
 }
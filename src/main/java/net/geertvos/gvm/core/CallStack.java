@@ -0,0 +1,137 @@
+package net.geertvos.gvm.core;
+
+import java.util.Arrays;
+
+/**
+ * The call stack of a GVMThread. Frames are stored as columns of preallocated arrays instead of StackFrame objects,
+ * so a call does not allocate. The arrays grow in chunks when the call depth exceeds the capacity.
+ * Frame 0 is the bottom of the stack.
+ *
+ * @author geertvos
+ */
+public class CallStack {
+
+	private static final int CHUNK_SIZE = 64;
+
+	private int[] programCounters;
+	private int[] framePointers;
+	private int[] callingFunctions;
+	private int[] lineNumbers;
+	private int[] locations;
+	private int[] scopes;
+	private Type[] scopeTypes;
+	private int size = 0;
+
+	public CallStack() {
+		this(CHUNK_SIZE);
+	}
+
+	private CallStack(int capacity) {
+		programCounters = new int[capacity];
+		framePointers = new int[capacity];
+		callingFunctions = new int[capacity];
+		lineNumbers = new int[capacity];
+		locations = new int[capacity];
+		scopes = new int[capacity];
+		scopeTypes = new Type[capacity];
+	}
+
+	public void push(int programCounter, int framePointer, int callingFunction, int lineNumber, int location, int scope, Type scopeType) {
+		if (size == programCounters.length) {
+			resize(size + CHUNK_SIZE);
+		}
+		programCounters[size] = programCounter;
+		framePointers[size] = framePointer;
+		callingFunctions[size] = callingFunction;
+		lineNumbers[size] = lineNumber;
+		locations[size] = location;
+		scopes[size] = scope;
+		scopeTypes[size] = scopeType;
+		size++;
+	}
+
+	/**
+	 * Remove the top frame.
+	 */
+	public void pop() {
+		if (size == 0) {
+			throw new IllegalStateException("Call stack is empty");
+		}
+		size--;
+		scopeTypes[size] = null;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int getProgramCounter(int frame) {
+		return programCounters[frame];
+	}
+
+	public int getFramePointer(int frame) {
+		return framePointers[frame];
+	}
+
+	public int getCallingFunction(int frame) {
+		return callingFunctions[frame];
+	}
+
+	public int getLineNumber(int frame) {
+		return lineNumbers[frame];
+	}
+
+	public int getLocation(int frame) {
+		return locations[frame];
+	}
+
+	/**
+	 * Returns the heap reference of the scope object of the given frame.
+	 */
+	public int getScope(int frame) {
+		return scopes[frame];
+	}
+
+	public Type getScopeType(int frame) {
+		return scopeTypes[frame];
+	}
+
+	public void setScope(int frame, int scope) {
+		scopes[frame] = scope;
+	}
+
+	/**
+	 * Returns a snapshot of the given frame, for inspection and debugging.
+	 */
+	public StackFrame getFrame(int frame) {
+		return new StackFrame(programCounters[frame], framePointers[frame], callingFunctions[frame], lineNumbers[frame], locations[frame], new Value(scopes[frame], scopeTypes[frame]));
+	}
+
+	public CallStack copy() {
+		CallStack copy = new CallStack(programCounters.length);
+		System.arraycopy(programCounters, 0, copy.programCounters, 0, size);
+		System.arraycopy(framePointers, 0, copy.framePointers, 0, size);
+		System.arraycopy(callingFunctions, 0, copy.callingFunctions, 0, size);
+		System.arraycopy(lineNumbers, 0, copy.lineNumbers, 0, size);
+		System.arraycopy(locations, 0, copy.locations, 0, size);
+		System.arraycopy(scopes, 0, copy.scopes, 0, size);
+		System.arraycopy(scopeTypes, 0, copy.scopeTypes, 0, size);
+		copy.size = size;
+		return copy;
+	}
+
+	private void resize(int capacity) {
+		programCounters = Arrays.copyOf(programCounters, capacity);
+		framePointers = Arrays.copyOf(framePointers, capacity);
+		callingFunctions = Arrays.copyOf(callingFunctions, capacity);
+		lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+		locations = Arrays.copyOf(locations, capacity);
+		scopes = Arrays.copyOf(scopes, capacity);
+		scopeTypes = Arrays.copyOf(scopeTypes, capacity);
+	}
+
+}
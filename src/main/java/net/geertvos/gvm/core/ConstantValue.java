@@ -0,0 +1,36 @@
+package net.geertvos.gvm.core;
+
+/**
+ * An immutable Value. Constants like true, false and undefined are shared by everybody, so they can never be changed.
+ * The ValueStack copies a constant into a new Value before it can be aliased and PUT refuses to assign to a constant.
+ * Objects must not keep a constant as a field, {@link ShapedObject#setValue(String, Value)} stores a copy.
+ *
+ * @author geertvos
+ */
+public class ConstantValue extends Value {
+
+	public ConstantValue(int value, Type type) {
+		super(value, type);
+	}
+
+	@Override
+	public boolean isConstant() {
+		return true;
+	}
+
+	@Override
+	public void setValue(int value) {
+		throw new UnsupportedOperationException("Cannot modify constant " + this);
+	}
+
+	@Override
+	public void setType(Type type) {
+		throw new UnsupportedOperationException("Cannot modify constant " + this);
+	}
+
+	@Override
+	public void setComment(String string) {
+		throw new UnsupportedOperationException("Cannot modify constant " + this);
+	}
+
+}
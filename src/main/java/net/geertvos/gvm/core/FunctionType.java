@@ -2,42 +2,34 @@ package net.geertvos.gvm.core;
 
 import net.geertvos.gvm.program.GVMContext;
 
-public class FunctionType implements Type {
+public class FunctionType extends AbstractType {
 
-	@Override
-	public String getName() {
-		return "Function";
+	public static final int TYPE_ID = 2;
+	public static final FunctionType INSTANCE = new FunctionType();
+
+	public FunctionType() {
+		super(TYPE_ID, Operations.INVOKE, Operations.EQL);
 	}
 
 	@Override
-	public boolean supportsOperation(Operations op) {
-		if(op.equals(Operations.INVOKE)) {
-			return true;
-		}
-		if(op.equals(Operations.EQL)) {
-			return true;
-		}
-		return false;
+	public String getName() {
+		return "Function";
 	}
 
 	@Override
 	public Value perform(GVMContext context, Operations op, Value thisValue, Value otherValue) {
 		if(op.equals(Operations.EQL)) {
-			if(thisValue.getValue() == otherValue.getValue()) {
-				return new Value(1, new BooleanType());
-			} else {
-				return new Value(0, new BooleanType());
-			}
+			return Value.valueOf(thisValue.getValue() == otherValue.getValue());
 		}
-		return new Value(0,new Undefined());
+		return Value.UNDEFINED;
 	}
 
 	@Override
-	public boolean isInstance(Type otherType) {
-		if(otherType.getName().equals(getName())) {
-			return true;
+	public QuickOperation quicken(Operations op, Type otherType) {
+		if(op.equals(Operations.EQL)) {
+			return QuickOperation.of(BooleanType.INSTANCE, (a, b) -> a == b ? 1 : 0);
 		}
-		return false;
+		return null;
 	}
 
 
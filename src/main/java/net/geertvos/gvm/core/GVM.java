@@ -3,15 +3,31 @@ package net.geertvos.gvm.core;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import net.geertvos.gvm.bridge.NativeMethodWrapper;
 import net.geertvos.gvm.core.Type.Operations;
+import net.geertvos.gvm.gc.AllocationCollectionPolicy;
+import net.geertvos.gvm.gc.CollectionPolicy;
+import net.geertvos.gvm.gc.GarbageCollectionEvent.Cause;
+import net.geertvos.gvm.gc.GarbageCollectionStatistics;
 import net.geertvos.gvm.gc.GarbageCollector;
 import net.geertvos.gvm.gc.MarkAndSweepGarbageCollector;
+import net.geertvos.gvm.program.BytecodeDecoder;
+import net.geertvos.gvm.program.ConcurrentGVMHeap;
+import net.geertvos.gvm.program.GVMCode;
 import net.geertvos.gvm.program.GVMContext;
 import net.geertvos.gvm.program.GVMFunction;
 import net.geertvos.gvm.program.GVMHeap;
@@ -27,7 +43,13 @@ import net.geertvos.gvm.streams.RandomAccessByteStream;
 public class GVM {
 	
 	//The garbage collector, by default a simple depth first search trough the object references on the stack
-	private GarbageCollector gc = new MarkAndSweepGarbageCollector();
+	private GarbageCollector gc;
+
+	//Decides when the garbage collector runs
+	private CollectionPolicy collectionPolicy;
+
+	//Cumulative counters of the garbage collector
+	private final GarbageCollectionStatistics gcStatistics = new GarbageCollectionStatistics();
 	
 	//The heap contains the objects
 	private final GVMHeap heap;
@@ -35,8 +57,30 @@ public class GVM {
 	//Current program
 	private GVMProgram program;
 
-	private Collection<GVMThread> runningThreads = new ConcurrentLinkedDeque<GVMThread>();
-	private Collection<GVMThread> allThreads = new ConcurrentLinkedDeque<GVMThread>();
+	//Threads submitted by any Java thread, handed to the scheduler by the thread that interleaves the GVM threads
+	private final MpscQueue<GVMThread> submittedThreads = new MpscQueue<GVMThread>();
+	//Claimed by the Java thread that interleaves the GVM threads, so there is never more than one
+	private final AtomicBoolean interleaving = new AtomicBoolean();
+	private Scheduler scheduler = new RoundRobinScheduler();
+	//A set, so a finished thread is removed in constant time when there are many threads
+	private Collection<GVMThread> allThreads = Collections.newSetFromMap(new ConcurrentHashMap<GVMThread, Boolean>());
+
+	//The number of instructions between two steps of the garbage collector
+	private static final int GC_STEP_INTERVAL = 256;
+
+	//Dispatch table, indexed by opcode
+	private final InstructionHandler[] handlers = new InstructionHandler[256];
+
+	//Parallel mode: the executor that runs the GVM threads, null when all threads are interleaved on the calling thread
+	private Executor executor;
+	//Parallel mode: a GVM thread keeps its task until it finishes, for executors that start a thread per task
+	private boolean threadPerTask;
+	//Held for reading while a thread executes a quantum, held for writing by the garbage collector
+	private final ReentrantReadWriteLock safepointLock = new ReentrantReadWriteLock();
+	//The cause of a collection requested by a thread, it runs at the next safepoint
+	private final AtomicReference<Cause> requestedCollection = new AtomicReference<Cause>();
+	//The number of GVM threads that did not finish yet
+	private final AtomicInteger activeThreads = new AtomicInteger();
 	
 	public GVM( GVMProgram program )
 	{
@@ -44,9 +88,153 @@ public class GVM {
 	}
 	
 	public GVM( GVMProgram program, GVMHeap heap )
+	{
+		this(program, heap, new MarkAndSweepGarbageCollector());
+	}
+
+	public GVM( GVMProgram program, GVMHeap heap, GarbageCollector gc )
+	{
+		this(program, heap, gc, new AllocationCollectionPolicy());
+	}
+
+	public GVM( GVMProgram program, GVMHeap heap, GarbageCollector gc, CollectionPolicy collectionPolicy )
 	{
 		this.program = program;
 		this.heap = heap;
+		this.gc = gc;
+		this.collectionPolicy = collectionPolicy;
+		gc.addListener(gcStatistics);
+		registerHandlers();
+	}
+
+	public GarbageCollector getGarbageCollector() {
+		return gc;
+	}
+
+	public void setGarbageCollector(GarbageCollector gc) {
+		this.gc.removeListener(gcStatistics);
+		this.gc = gc;
+		gc.addListener(gcStatistics);
+	}
+
+	/**
+	 * Counters of all collections done by this GVM.
+	 */
+	public GarbageCollectionStatistics getGarbageCollectionStatistics() {
+		return gcStatistics;
+	}
+
+	/**
+	 * Run the garbage collector now. Must be called while the GVM is not running, or from native code.
+	 * In parallel mode a call from native code requests a collection at the next safepoint.
+	 */
+	public void collectGarbage() {
+		if(executor == null) {
+			collect(Cause.EXPLICIT);
+		} else if(safepointLock.getReadHoldCount() > 0) {
+			requestedCollection.set(Cause.EXPLICIT);
+		} else {
+			safepointLock.writeLock().lock();
+			try {
+				collect(Cause.EXPLICIT);
+			} finally {
+				safepointLock.writeLock().unlock();
+			}
+		}
+	}
+
+	public Scheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Replace the scheduler. Only allowed while the GVM is not running.
+	 */
+	public void setScheduler(Scheduler scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Run the GVM threads in parallel on the given executor, or interleave them on the calling thread when null.
+	 * Every runnable GVM thread is executed in quanta by a task of the executor. Between quanta the thread passes a
+	 * safepoint where the garbage collector can run while all threads are stopped. Parallel mode needs a thread safe
+	 * heap, see {@link ConcurrentGVMHeap}.
+	 * @throws IllegalStateException when the heap of this GVM is not thread safe
+	 */
+	public void setExecutor(Executor executor) {
+		setExecutor(executor, false);
+	}
+
+	/**
+	 * Run the GVM threads in parallel on the given executor.
+	 * @param threadPerTask When true every GVM thread is executed by a single task until it finishes, instead of a
+	 * new task for every quantum. Use it with an executor that starts a thread per task, like a virtual thread executor.
+	 * @throws IllegalStateException when the heap of this GVM is not thread safe
+	 */
+	public void setExecutor(Executor executor, boolean threadPerTask) {
+		if(executor != null && !heap.isThreadSafe()) {
+			throw new IllegalStateException("Parallel execution needs a thread safe heap");
+		}
+		this.executor = executor;
+		this.threadPerTask = threadPerTask;
+		if(executor != null) {
+			//Decode up front, so the workers do not decode the same functions at the same time
+			program.decode();
+		}
+	}
+
+	/**
+	 * Run every GVM thread on its own virtual thread. A native that blocks then only parks its own GVM thread, see
+	 * {@link #callBlocking(Callable)}. Needs a Java runtime with virtual threads, the GVM itself is built for Java 8.
+	 * @throws UnsupportedOperationException when the Java runtime has no virtual threads
+	 */
+	public void useVirtualThreads() {
+		setExecutor(VirtualThreads.newExecutor(), true);
+	}
+
+	/**
+	 * Call a blocking operation from native code, for example IO. In parallel mode the GVM thread leaves the
+	 * safepoint while the operation runs, so the garbage collector and the other threads do not wait for it.
+	 * The operation runs while the collector may move on, so it must not use the heap. The arguments of the native
+	 * stay on the stack and remain reachable.
+	 */
+	public <T> T callBlocking(Callable<T> operation) throws Exception {
+		int holds = leaveSafepoint();
+		try {
+			return operation.call();
+		} finally {
+			enterSafepoint(holds);
+		}
+	}
+
+	/**
+	 * Release the safepoint locks held by the calling thread, so a pending collection does not wait for it.
+	 * @return the number of locks to take again
+	 */
+	private int leaveSafepoint() {
+		int holds = safepointLock.getReadHoldCount();
+		for(int i = 0; i < holds; i++) {
+			safepointLock.readLock().unlock();
+		}
+		return holds;
+	}
+
+	private void enterSafepoint(int holds) {
+		for(int i = 0; i < holds; i++) {
+			safepointLock.readLock().lock();
+		}
+	}
+
+	public CollectionPolicy getCollectionPolicy() {
+		return collectionPolicy;
+	}
+
+	public void setCollectionPolicy(CollectionPolicy collectionPolicy) {
+		this.collectionPolicy = collectionPolicy;
 	}
 	
 	public GVMHeap getHeap() {
@@ -74,8 +262,8 @@ public class GVM {
 	public void run()
 	{
 		GVMThread main = spawnThread();
-		runningThreads.add(main);
 		heap.clear();
+		program.decode();
 		
 		//The following bytecode loads function#0 from the program and invokes it without parameters.
 		RandomAccessByteStream bytecode = new RandomAccessByteStream();
@@ -83,14 +271,33 @@ public class GVM {
 		bytecode.writeString("Object");
 		bytecode.write( LDC_D );
 		bytecode.writeInt(0);
-		bytecode.writeString(new FunctionType().getName());
+		bytecode.writeString(FunctionType.INSTANCE.getName());
 		bytecode.write( INVOKE );
 		bytecode.writeInt(0);
 		bytecode.write( HALT );
 		bytecode.seek(0);
 
-		main.setBytecode(bytecode.clone());
-		fetchAndDecodeAll();
+		main.setCode(BytecodeDecoder.decode(program, bytecode), 0);
+		CompletableFuture<GVMThread> completion = submit(main);
+		if(executor == null) {
+			main.awaitFinished();
+		} else {
+			awaitAllFinished();
+		}
+		//Only the error of the main thread is thrown, other threads report it through their own future
+		if(completion.isCompletedExceptionally()) {
+			try {
+				completion.join();
+			} catch(CompletionException e) {
+				if(e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException)e.getCause();
+				}
+				if(e.getCause() instanceof Error) {
+					throw (Error)e.getCause();
+				}
+				throw e;
+			}
+		}
 		System.out.println("> VM exited normal");
 	}
 	
@@ -100,400 +307,704 @@ public class GVM {
 	 */
 	private void fetchAndDecodeAll()
 	{
-		while( !runningThreads.isEmpty() )
+		int instructions = 0;
+		while( true )
 		{
-			Iterator<GVMThread> threadIterator = runningThreads.iterator();
-			while(threadIterator.hasNext()) {
-				GVMThread thread = threadIterator.next();
-				boolean continues = fetchAndDecode(thread);
-				if(!continues) {
-					runningThreads.remove(thread);
+			GVMThread submitted;
+			while( (submitted = submittedThreads.poll()) != null ) {
+				scheduler.add(submitted);
+			}
+			GVMThread thread = scheduler.next();
+			if( thread == null ) {
+				break;
+			}
+			int quantum = scheduler.getQuantum(thread);
+			boolean continues = true;
+			int executed = 0;
+			try {
+				while( continues && executed < quantum ) {
+					continues = fetchAndDecode(thread);
+					executed++;
 				}
+			} catch(RuntimeException e) {
+				//Stop this thread only, the others keep running
+				failed(thread, e);
+				continues = false;
+			}
+			if( continues ) {
+				scheduler.add(thread);
+			}
+			//Give incremental collectors the chance to do some work
+			instructions += executed;
+			if( instructions >= GC_STEP_INTERVAL ) {
+				instructions = 0;
+				stepGarbageCollector();
 			}
 		}
 	}
-	
-	
+
+	/**
+	 * Run the given thread and wait until it finished. An error that stops the thread is not thrown here, use
+	 * {@link #submit(GVMThread)} to observe it. When native code injects a thread in parallel mode, the calling thread
+	 * leaves the safepoint while it waits. Otherwise a pending collection would keep the injected thread from running.
+	 */
 	public void inject(GVMThread thread)
 	{
-		if(runningThreads.isEmpty()) {
-			//VM was already finished
-			runningThreads.add(thread);
-			fetchAndDecodeAll();
-		} else {
-			//TODO: Race condition here
-			runningThreads.add(thread);
+		submit(thread);
+		int holds = leaveSafepoint();
+		try {
+			thread.awaitFinished();
+		} finally {
+			enterSafepoint(holds);
 		}
-		thread.awaitFinished();
 	}
 
-
-	public boolean fetchAndDecode(GVMThread thread) {
-		GVMContext context = new GVMContext(this, thread);
-		int instruction= GVM.HALT;
-		//Fetch
-		instruction = thread.getBytecode().read();
-		//Decode
-		switch (instruction) {
-		case NEW:
-		{
-			String typeName = thread.getBytecode().readString();
-			Type type = program.getType(typeName);
-			if(type.supportsOperation(Operations.NEW)) {
-				Value v = type.perform(context, Operations.NEW, null, (Value)null);
-				context.getThread().getStack().push(v);
-			} else {
-				thread.handleException("Type "+typeName+" does not support NEW.", context);
-			}
+	/**
+	 * Submit a thread for execution. Can be called by any Java thread at any time, also while the GVM is running.
+	 * In parallel mode the thread is handed to the executor. Otherwise it is added to the run queue. When no other Java
+	 * thread is interleaving the GVM threads, the calling thread does so until no GVM thread is runnable anymore.
+	 * @return A future that completes with the thread when it finished, or with the error that stopped it
+	 */
+	public CompletableFuture<GVMThread> submit(GVMThread thread)
+	{
+		if(executor != null) {
+			schedule(thread);
+		} else {
+			submittedThreads.offer(thread);
+			interleave();
 		}
-		break;
-		case LDS:
-		{
-			int pos = thread.getBytecode().readInt();
-			if(pos >= 0) {
-				int arg = thread.getFramepointer() + pos;
-				thread.getStack().push(thread.getStack().get(arg));
-			} else {
-				thread.getStack().push(thread.getStack().get(thread.getStack().size()+pos-1));
+		return thread.getCompletion();
+	}
+
+	/**
+	 * Interleave the GVM threads on the calling thread, unless another Java thread already does. A thread that is
+	 * submitted while the other Java thread is giving up that role is not lost: the queue is checked again after
+	 * the role is released.
+	 */
+	private void interleave()
+	{
+		while( !submittedThreads.isEmpty() && interleaving.compareAndSet(false, true) ) {
+			try {
+				fetchAndDecodeAll();
+			} finally {
+				interleaving.set(false);
 			}
 		}
-		break;
-		case DUP:
-		{
-			thread.getStack().push(thread.getStack().get(thread.getStack().size()-1));
-		}
-		break;
-		case LDC_D:
-		{
-			int arg = thread.getBytecode().readInt();
-			String typeName = thread.getBytecode().readString();
-			Type type = program.getType(typeName);
-			thread.getStack().push( new Value(arg, type) );
-		}
-		break;
-		case INVOKE:
-			{
-				//Pop the function reference
-				int argCount = thread.getBytecode().readInt();
-				Value calleeFunction = thread.getStack().pop();
-				if( !calleeFunction.getType().supportsOperation(Operations.INVOKE) ){
-					thread.handleException( "Invoking a type that does not support invocation: "+calleeFunction.getType(), context);
-					break;
-				}
+	}
 
-				//Set the current function pointer
-				int callerFunction = thread.getFunctionPointer();
-				thread.setFunctionPointer(calleeFunction.getValue());
-				GVMFunction functionDescription = program.getFunction(calleeFunction.getValue());
-				//Obtain the number of parameters
-				int paramCount = functionDescription.getParameters().size() ;
-				if(argCount != paramCount) {
-					thread.handleException( "Argument count for function "+calleeFunction.getValue()+" is "+paramCount+", but "+argCount+" provided.", context);
-					break;
-				}
-				
-				//Store them for now
-				Value[] params = new Value[paramCount];
-				for( int i=paramCount-1; i >= 0; i--)
-					params[i] = thread.getStack().pop();
-				
-				Value thisval = thread.getStack().peek();;
-				//Push state on the stack
-				//TODO: create a method for this in the thread class
-				thread.getCallStack().push(new StackFrame(thread.getBytecode().getPointerPosition(), thread.getFramepointer(), callerFunction, thread.getDebugLineNumber(), thread.getLocation(), thisval));
-				thread.setFramepointer(thread.getStack().size()-1);
-				for( int i=0;i<paramCount;i++)
-				{
-					thread.getStack().push(params[i]);
-					params[i].setComment("Function parameter "+i);
-				}
-				for( int i=0;i<functionDescription.getLocals().size();i++)
-				{
-					thread.getStack().push(new Value(0,new Undefined(),"Local variable "+i));
-				}					
-				thread.setBytecode(functionDescription.getBytecode().clone());
-				thread.getBytecode().seek(0);
+	private void failed(GVMThread thread, Throwable e) {
+		thread.markThreadFailed(e);
+		allThreads.remove(thread);
+	}
+
+
+	/**
+	 * Parallel mode: hand the given thread to the executor.
+	 */
+	private void schedule(GVMThread thread) {
+		activeThreads.incrementAndGet();
+		executor.execute(() -> execute(thread));
+	}
+
+	/**
+	 * Parallel mode: execute a quantum of the given thread and pass the safepoint. Then the thread is scheduled again
+	 * so other threads get a turn on the executor, or it yields and continues on the same task in thread per task mode.
+	 */
+	private void execute(GVMThread thread) {
+		boolean rescheduled = false;
+		try {
+			boolean continues = runQuantum(thread);
+			safepoint();
+			while(continues && threadPerTask) {
+				Thread.yield();
+				continues = runQuantum(thread);
+				safepoint();
 			}
-			break;
-		case RETURN:
-			{
-				//Pop return value
-				Value v = thread.getStack().pop();
-				
-				//Pop locals
-				GVMFunction function = program.getFunction(thread.getFunctionPointer());
-				int localCount = function.getLocals().size() ;
-				for( int i=0;i<localCount;i++)
-				{
-					thread.getStack().pop();
-				}
-				//Pop arguments, TODO: issue.. caller can supply different number of arguments. We need to support variable arguments...
-				int paramCount = function.getParameters().size() ;
-				for( int i=0;i<paramCount;i++) {
-					thread.getStack().pop();
+			if(continues) {
+				executor.execute(() -> execute(thread));
+				rescheduled = true;
+			}
+		} catch(Error e) {
+			//For example a StackOverflowError, the thread is stopped and run does not wait for it
+			failed(thread, e);
+			throw e;
+		} finally {
+			if(!rescheduled && activeThreads.decrementAndGet() == 0) {
+				synchronized(activeThreads) {
+					activeThreads.notifyAll();
 				}
-				thread.getStack().pop(); // this
-				StackFrame frame = thread.getCallStack().pop();
-				thread.setDebugLineNumber(frame.getLineNumber());
-				thread.setFunctionPointer(frame.getCallingFunction());
-				thread.setFramepointer(frame.getFramePointer());
-				thread.setLocation(frame.getLocation());
-				int pc = frame.getProgramCounter(); //PC
-				thread.setBytecode(program.getFunction(thread.getFunctionPointer()).getBytecode().clone());
-				thread.getBytecode().seek(pc);
-				thread.getStack().push(v);
-				gc.collect(heap, allThreads);
 			}
-			break;
-		case PUT:
-			{
-				Value toSet = thread.getStack().pop();
-				Value value = thread.getStack().peek();
-				toSet.setValue(value.getValue());
-				toSet.setType(value.getType());
+		}
+	}
+
+	/**
+	 * Execute at most a quantum of instructions of the given thread while holding the safepoint lock.
+	 * @return true when the thread did not finish
+	 */
+	private boolean runQuantum(GVMThread thread) {
+		boolean continues = true;
+		safepointLock.readLock().lock();
+		try {
+			int quantum = scheduler.getQuantum(thread);
+			for(int i = 0; i < quantum && continues; i++) {
+				continues = fetchAndDecode(thread);
 			}
-			break;
-		case GET:
-		{
-			Value variableName = thread.getStack().pop();
-			Value reference = thread.getStack().pop();	//pop value which must be a reference to object
-			if(!reference.getType().supportsOperation(Operations.GET)) {
-				thread.handleException( "Type does not support get operation: "+reference+" pc: "+thread.getBytecode().getPointerPosition()+" f:"+thread.getFunctionPointer(), context);
-				break;
+		} catch(RuntimeException e) {
+			failed(thread, e);
+			continues = false;
+		} finally {
+			safepointLock.readLock().unlock();
+		}
+		return continues;
+	}
+
+	/**
+	 * Parallel mode: run a requested collection, while no thread executes instructions. Without a request the
+	 * collector is only stepped when no other thread is executing a quantum at this moment.
+	 */
+	private void safepoint() {
+		if(requestedCollection.get() != null) {
+			safepointLock.writeLock().lock();
+		} else if(!safepointLock.writeLock().tryLock()) {
+			return;
+		}
+		try {
+			stepGarbageCollector();
+			Cause cause = requestedCollection.getAndSet(null);
+			if(cause != null) {
+				collect(cause);
 			}
-			Value value = reference.getType().perform(context, Operations.GET, reference, variableName);
-			thread.getStack().push(value);
+		} finally {
+			safepointLock.writeLock().unlock();
 		}
-		break;
-		case GETDYNAMIC:
-		{
-			Value variable = thread.getStack().pop();
-			//TODO: Replace this and move to types
-			String variableName = program.getString(variable.getValue());
-			Value theValue = null;
-			for(StackFrame frame : thread.getCallStack()) {
-				Value scope = frame.getScope();
-				GVMObject object = heap.getObject(scope.getValue());
-				if(object.hasValue(variableName)) {
-					theValue = object.getValue(variableName);
-					break;
+	}
+
+	private void awaitAllFinished() {
+		synchronized(activeThreads) {
+			while(activeThreads.get() > 0) {
+				try {
+					activeThreads.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
 				}
 			}
-			if(theValue == null) {
-				GVMObject vo = heap.getObject(thread.getCallStack().peek().getScope().getValue());
-				theValue = vo.getValue(variableName);
+		}
+	}
+
+	public boolean fetchAndDecode(GVMThread thread) {
+		//Fetch
+		int instruction = thread.fetch();
+		//Decode
+		InstructionHandler handler = handlers[instruction & 0xFF];
+		if(handler == null) {
+			//Unknown instructions are ignored
+			return true;
+		}
+		return handler.execute(thread, thread.getStack(), thread.getContext());
+	}
+
+	private void registerHandlers() {
+		handlers[NEW] = this::executeNew;
+		handlers[LDS] = this::executeLds;
+		handlers[LDG] = this::executeLdg;
+		handlers[DUP] = this::executeDup;
+		handlers[LDC_D] = this::executeLdc;
+		handlers[INVOKE] = this::executeInvoke;
+		handlers[RETURN] = this::executeReturn;
+		handlers[PUT] = this::executePut;
+		handlers[GET] = this::executeGet;
+		handlers[GETDYNAMIC] = this::executeGetDynamic;
+		handlers[HALT] = this::executeHalt;
+		handlers[ADD] = new BinaryOperationHandler(Opcode.ADD, "addition");
+		handlers[SUB] = new BinaryOperationHandler(Opcode.SUB, "substraction");
+		handlers[MULT] = new BinaryOperationHandler(Opcode.MULT, "multiplication");
+		handlers[DIV] = new BinaryOperationHandler(Opcode.DIV, "division");
+		handlers[MOD] = new BinaryOperationHandler(Opcode.MOD, "modulo");
+		handlers[AND] = new BinaryOperationHandler(Opcode.AND, "AND");
+		handlers[OR] = new BinaryOperationHandler(Opcode.OR, "OR");
+		handlers[EQL] = new BinaryOperationHandler(Opcode.EQL, "EQL");
+		handlers[LT] = new BinaryOperationHandler(Opcode.LT, "LT");
+		handlers[GT] = new BinaryOperationHandler(Opcode.GT, "GT");
+		handlers[NOT] = this::executeNot;
+		handlers[JMP] = this::executeJmp;
+		handlers[CJMP] = this::executeCjmp;
+		handlers[POP] = this::executePop;
+		handlers[NATIVE] = this::executeNative;
+		handlers[THROW] = this::executeThrow;
+		handlers[DEBUG] = this::executeDebug;
+		handlers[BREAKPOINT] = this::executeBreakpoint;
+		handlers[FORK] = this::executeFork;
+		handlers[LDS_GET] = this::executeLdsGet;
+		handlers[LDC_INVOKE] = this::executeLdcInvoke;
+		handlers[LDC_GETDYNAMIC] = this::executeLdcGetDynamic;
+	}
+
+	/**
+	 * Handler for the instructions that pop two values and perform a type operation on them: ADD, SUB, MULT, DIV, MOD, AND, OR, EQL, LT and GT.
+	 * The handler quickens itself: the quick operation for the operand types is cached per instruction site and used
+	 * while the types match.
+	 */
+	private static class BinaryOperationHandler implements InstructionHandler {
+
+		private final Operations operation;
+		private final String description;
+
+		BinaryOperationHandler(Opcode opcode, String description) {
+			this.operation = opcode.getOperation();
+			this.description = description;
+		}
+
+		@Override
+		public boolean execute(GVMThread thread, ValueStack stack, GVMContext context) {
+			//Try the quick operation for the operand types seen at this site
+			GVMCode code = thread.getCode();
+			int site = thread.getProgramCounter() - 1;
+			int top = stack.size() - 1;
+			Type thisType = stack.getType(top - 1);
+			Type otherType = stack.getType(top);
+			QuickOperation quick = null;
+			Object cache = code.getSiteCache(site);
+			if (cache == null) {
+				quick = quicken(thisType, otherType);
+				code.setSiteCache(site, new QuickenedSite(thisType, otherType, quick, 0));
+			} else {
+				QuickenedSite quickened = (QuickenedSite) cache;
+				if (quickened.matches(thisType, otherType)) {
+					quick = quickened.getOperation();
+				} else if (!quickened.isMegamorphic()) {
+					quick = quicken(thisType, otherType);
+					code.setSiteCache(site, quickened.miss(thisType, otherType, quick));
+				}
 			}
-			thread.getStack().push(theValue);
-			break;
-		}
-		case HALT:
-			{
-				thread.markThreadFinished();
-				this.killThread(thread);
-				return false;
+			if (quick != null) {
+				int result = quick.perform(context, stack.getValue(top - 1), stack.getValue(top));
+				stack.drop(2);
+				stack.push(result, quick.getResultType());
+				return true;
 			}
-		case ADD: 
-		{
-			Value arg2 = thread.getStack().pop();
-			Value arg1 = thread.getStack().pop();
-			if(arg1.getType().supportsOperation(Operations.ADD)) {
-				Value result = arg1.getType().perform(context, Operations.ADD, arg1, arg2);
-				thread.getStack().push(result);
+
+			Value arg2 = stack.pop();
+			Value arg1 = stack.pop();
+			if(arg1.getType().supportsOperation(operation)) {
+				Value result = arg1.getType().perform(context, operation, arg1, arg2);
+				stack.push(result);
 			}
-			else thread.handleException("Type "+arg1.getType().getName()+" does not support addition.", context);
-			break;
+			else thread.handleException("Type "+arg1.getType().getName()+" does not support "+description+".", context);
+			return true;
 		}
-		case SUB: 
-		{
-			Value arg2 = thread.getStack().pop();
-			Value arg1 = thread.getStack().pop();
-			if(arg1.getType().supportsOperation(Operations.SUB)) {
-				Value result = arg1.getType().perform(context, Operations.SUB, arg1, arg2);
-				thread.getStack().push(result);
+
+		private QuickOperation quicken(Type thisType, Type otherType) {
+			if (!thisType.supportsOperation(operation)) {
+				return null;
 			}
-			else thread.handleException("Type "+arg1.getType().getName()+" does not support substraction.", context);
-			break;
+			return thisType.quicken(operation, otherType);
 		}
-		case MULT: 
-		{
-			Value arg2 = thread.getStack().pop();
-			Value arg1 = thread.getStack().pop();
-			if(arg1.getType().supportsOperation(Operations.MULT)) {
-				Value result = arg1.getType().perform(context, Operations.MULT, arg1, arg2);
-				thread.getStack().push(result);
+	}
+
+	/**
+	 * Run the garbage collector when the collection policy asks for it. In parallel mode the collection is requested
+	 * and runs when the thread passes the next safepoint.
+	 */
+	private void collectGarbageIfNeeded() {
+		if(!gc.isCollecting() && collectionPolicy.shouldCollect(heap)) {
+			if(executor == null) {
+				collect(collectionPolicy.getCause(heap));
+			} else {
+				requestedCollection.compareAndSet(null, collectionPolicy.getCause(heap));
 			}
-			else thread.handleException("Type "+arg1.getType().getName()+" does not support multiplication.", context);
-			break;
 		}
-		case DIV: 
-		{
-			Value arg2 = thread.getStack().pop();
-			Value arg1 = thread.getStack().pop();
-			if(arg1.getType().supportsOperation(Operations.DIV)) {
-				Value result = arg1.getType().perform(context, Operations.DIV, arg1, arg2);
-				thread.getStack().push(result);
-			}
-			else thread.handleException("Type "+arg1.getType().getName()+" does not support division.", context);
-			break;
+	}
+
+	private void collect(Cause cause) {
+		if(gc.isCollecting()) {
+			//The running cycle tells the policy when it is finished
+			return;
 		}
-		case MOD: 
-		{
-			Value arg2 = thread.getStack().pop();
-			Value arg1 = thread.getStack().pop();
-			if(arg1.getType().supportsOperation(Operations.MOD)) {
-				Value result = arg1.getType().perform(context, Operations.MOD, arg1, arg2);
-				thread.getStack().push(result);
-			}
-			else thread.handleException( "Type "+arg1.getType().getName()+" does not support modulo.", context);
-			break;
+		gc.collect(heap, allThreads, cause);
+		if(!gc.isCollecting()) {
+			collectionPolicy.collected(heap);
 		}
-		case AND: 
-		{
-			Value arg2 = thread.getStack().pop();
-			Value arg1 = thread.getStack().pop();
-			if(arg1.getType().supportsOperation(Operations.AND)) {
-				Value result = arg1.getType().perform(context, Operations.AND, arg1, arg2);
-				thread.getStack().push(result);
-			}
-			else thread.handleException( "Type "+arg1.getType().getName()+" does not support AND.", context);
-			break;
+	}
+
+	private void stepGarbageCollector() {
+		boolean collecting = gc.isCollecting();
+		gc.step(heap, allThreads);
+		if(collecting && !gc.isCollecting()) {
+			collectionPolicy.collected(heap);
 		}
-		case OR: 
-		{
-			Value arg2 = thread.getStack().pop();
-			Value arg1 = thread.getStack().pop();
-			if(arg1.getType().supportsOperation(Operations.OR)) {
-				Value result = arg1.getType().perform(context, Operations.OR, arg1, arg2);
-				thread.getStack().push(result);
-			}
-			else thread.handleException( "Type "+arg1.getType().getName()+" does not support OR.", context);
-			break;
+	}
+
+	private boolean executeNew(GVMThread thread, ValueStack stack, GVMContext context) {
+		Type type = program.getTypeConstant(thread.fetch());
+		if(type.supportsOperation(Operations.NEW)) {
+			Value v = type.perform(context, Operations.NEW, null, (Value)null);
+			stack.push(v);
+		} else {
+			thread.handleException("Type "+type.getName()+" does not support NEW.", context);
 		}
-		case NOT: 
-		{
-			Value arg1 = thread.getStack().pop();
-			if(arg1.getType().supportsOperation(Operations.NOT)) {
-				Value result = arg1.getType().perform(context, Operations.NOT, arg1, (Value)null);
-				thread.getStack().push(result);
-			}
-			else thread.handleException( "Type "+arg1.getType().getName()+" does not support NOT.", context);
-			break;
+		return true;
+	}
+
+	private boolean executeLds(GVMThread thread, ValueStack stack, GVMContext context) {
+		int pos = thread.fetch();
+		if(pos >= 0) {
+			int arg = thread.getFramepointer() + pos;
+			stack.push(stack.get(arg));
+		} else {
+			stack.push(stack.get(stack.size()+pos-1));
 		}
-		case EQL: 
-		{
-			Value arg2 = thread.getStack().pop();
-			Value arg1 = thread.getStack().pop();
-			if(arg1.getType().supportsOperation(Operations.EQL)) {
-				Value result = arg1.getType().perform(context, Operations.EQL, arg1, arg2);
-				thread.getStack().push(result);
-			}
-			else thread.handleException( "Type "+arg1.getType().getName()+" does not support EQL.", context);
-			break;
+		return true;
+	}
+
+	private boolean executeLdg(GVMThread thread, ValueStack stack, GVMContext context) {
+		int pos = thread.fetch();
+		stack.push(stack.get(pos));
+		return true;
+	}
+
+	private boolean executeDup(GVMThread thread, ValueStack stack, GVMContext context) {
+		stack.push(stack.get(stack.size()-1));
+		return true;
+	}
+
+	private boolean executeLdc(GVMThread thread, ValueStack stack, GVMContext context) {
+		int arg = thread.fetch();
+		Type type = program.getTypeConstant(thread.fetch());
+		stack.push(arg, type);
+		return true;
+	}
+
+	private boolean executeInvoke(GVMThread thread, ValueStack stack, GVMContext context) {
+		//Pop the function reference
+		int argCount = thread.fetch();
+		Type calleeType = stack.getType(stack.size()-1);
+		int callee = stack.getValue(stack.size()-1);
+		stack.drop(1);
+		return invoke(thread, stack, context, callee, calleeType, argCount);
+	}
+
+	private boolean executeLdcInvoke(GVMThread thread, ValueStack stack, GVMContext context) {
+		int callee = thread.fetch();
+		Type calleeType = program.getTypeConstant(thread.fetch());
+		int argCount = thread.fetch();
+		return invoke(thread, stack, context, callee, calleeType, argCount);
+	}
+
+	private boolean invoke(GVMThread thread, ValueStack stack, GVMContext context, int callee, Type calleeType, int argCount) {
+		if( !calleeType.supportsOperation(Operations.INVOKE) ){
+			thread.handleException( "Invoking a type that does not support invocation: "+calleeType, context);
+			return true;
+		}
+
+		GVMFunction functionDescription = program.getFunction(callee);
+		//Obtain the number of parameters
+		int paramCount = functionDescription.getParameters().size() ;
+		if(argCount != paramCount) {
+			thread.handleException( "Argument count for function "+callee+" is "+paramCount+", but "+argCount+" provided.", context);
+			return true;
 		}
-		case LT: 
+
+		//The parameters stay where the caller pushed them, the framepointer points to 'this' below them
+		int framepointer = stack.size() - paramCount - 1;
+		//Push state on the call stack and set the current function pointer
+		thread.pushFrame(stack.getValue(framepointer), stack.getType(framepointer));
+		thread.setFunctionPointer(callee);
+		thread.setFramepointer(framepointer);
+		for( int i=0;i<functionDescription.getLocals().size();i++)
 		{
-			Value arg2 = thread.getStack().pop();
-			Value arg1 = thread.getStack().pop();
-			if(arg1.getType().supportsOperation(Operations.LT)) {
-				Value result = arg1.getType().perform(context, Operations.LT, arg1, arg2);
-				thread.getStack().push(result);
+			stack.push(0, Undefined.INSTANCE);
+		}
+		thread.setCode(program.getCode(callee), 0);
+		return true;
+	}
+
+	private boolean executeReturn(GVMThread thread, ValueStack stack, GVMContext context) {
+		//Replace locals, arguments and this by the return value
+		GVMFunction function = program.getFunction(thread.getFunctionPointer());
+		int localCount = function.getLocals().size() ;
+		//TODO: issue.. caller can supply different number of arguments. We need to support variable arguments...
+		int paramCount = function.getParameters().size() ;
+		stack.moveTopTo(stack.size() - 1 - localCount - paramCount - 1);
+		thread.popFrame();
+		collectGarbageIfNeeded();
+		return true;
+	}
+
+	private boolean executePut(GVMThread thread, ValueStack stack, GVMContext context) {
+		Value toSet = stack.pop();
+		if(toSet.isConstant()) {
+			thread.handleException("Cannot assign to constant "+toSet, context);
+			return true;
+		}
+		int top = stack.size()-1;
+		toSet.setValue(stack.getValue(top));
+		toSet.setType(stack.getType(top));
+		heap.recordWrite(toSet);
+		return true;
+	}
+
+	private boolean executeGet(GVMThread thread, ValueStack stack, GVMContext context) {
+		int site = thread.getProgramCounter() - 1;
+		int top = stack.size() - 1;
+		Value field = cachedGet(thread.getCode(), site, stack.getType(top-1), stack.getValue(top-1), stack.getType(top), stack.getValue(top));
+		if(field != null) {
+			stack.drop(2);
+			stack.push(field);
+			return true;
+		}
+		Value variableName = stack.pop();
+		Value reference = stack.pop();	//pop value which must be a reference to object
+		return get(thread, stack, context, site, reference, variableName);
+	}
+
+	private boolean executeLdsGet(GVMThread thread, ValueStack stack, GVMContext context) {
+		int site = thread.getProgramCounter() - 1;
+		int pos = thread.fetch();
+		int slot = pos >= 0 ? thread.getFramepointer() + pos : stack.size()+pos-1;
+		int name = thread.fetch();
+		Type nameType = program.getTypeConstant(thread.fetch());
+		Value field = cachedGet(thread.getCode(), site, stack.getType(slot), stack.getValue(slot), nameType, name);
+		if(field != null) {
+			stack.push(field);
+			return true;
+		}
+		return get(thread, stack, context, site, stack.get(slot), new Value(name, nameType));
+	}
+
+	private boolean get(GVMThread thread, ValueStack stack, GVMContext context, int site, Value reference, Value variableName) {
+		if(!reference.getType().supportsOperation(Operations.GET)) {
+			thread.handleException( "Type does not support get operation: "+reference+" pc: "+thread.getProgramCounter()+" f:"+thread.getFunctionPointer(), context);
+			return true;
+		}
+		Value value = reference.getType().perform(context, Operations.GET, reference, variableName);
+		stack.push(value);
+		updateGetCache(thread.getCode(), site, reference, variableName);
+		return true;
+	}
+
+	/**
+	 * Read the field using the inline cache of the GET instruction at the given site.
+	 * @return the field, or null when the cache does not contain the layout of the object
+	 */
+	private Value cachedGet(GVMCode code, int site, Type referenceType, int reference, Type nameType, int name) {
+		Object cache = code.getSiteCache(site);
+		if(cache == null || !referenceType.isGetCacheable()) {
+			return null;
+		}
+		PropertyCache properties = (PropertyCache) cache;
+		if(!properties.matches(nameType, name)) {
+			return null;
+		}
+		GVMObject object = heap.getObject(reference);
+		Object layout = object.getLayout();
+		if(layout == null) {
+			return null;
+		}
+		int slot = properties.lookup(layout);
+		return slot < 0 ? null : object.getSlotValue(slot);
+	}
+
+	/**
+	 * Add the layout of the object that was just read to the inline cache of the GET instruction at the given site.
+	 */
+	private void updateGetCache(GVMCode code, int site, Value reference, Value variableName) {
+		if(!reference.getType().isGetCacheable()) {
+			return;
+		}
+		PropertyCache properties = (PropertyCache) code.getSiteCache(site);
+		if(properties != null && properties.isMegamorphic()) {
+			return;
+		}
+		GVMObject object = heap.getObject(reference.getValue());
+		Object layout = object.getLayout();
+		if(layout == null) {
+			return;
+		}
+		int slot = object.getSlot(program.getString(variableName.getValue()));
+		if(slot < 0) {
+			return;
+		}
+		if(properties != null && properties.matches(variableName.getType(), variableName.getValue()) && properties.lookup(layout) >= 0) {
+			//Already cached, the object was read before the field existed
+			return;
+		}
+		if(properties == null) {
+			properties = PropertyCache.monomorphic(variableName.getType(), variableName.getValue(), layout, slot);
+		} else if(!properties.matches(variableName.getType(), variableName.getValue())) {
+			//The instruction reads different fields
+			properties = PropertyCache.MEGAMORPHIC;
+		} else {
+			properties = properties.add(layout, slot);
+		}
+		code.setSiteCache(site, properties);
+	}
+
+	private boolean executeGetDynamic(GVMThread thread, ValueStack stack, GVMContext context) {
+		int site = thread.getProgramCounter() - 1;
+		int variable = stack.getValue(stack.size()-1);
+		stack.drop(1);
+		return getDynamic(thread, stack, site, variable);
+	}
+
+	private boolean executeLdcGetDynamic(GVMThread thread, ValueStack stack, GVMContext context) {
+		int site = thread.getProgramCounter() - 1;
+		int variable = thread.fetch();
+		//The type of the name is not used
+		thread.fetch();
+		return getDynamic(thread, stack, site, variable);
+	}
+
+	private boolean getDynamic(GVMThread thread, ValueStack stack, int site, int variable) {
+		CallStack callStack = thread.getCallStack();
+		GVMCode code = thread.getCode();
+		ScopeCache cache = (ScopeCache) code.getSiteCache(site);
+		String variableName = null;
+		if(cache != null) {
+			Value cached = cache.lookup(heap, callStack, variable);
+			if(cached != null) {
+				stack.push(cached);
+				return true;
 			}
-			else thread.handleException( "Type "+arg1.getType().getName()+" does not support LT.", context);
-			break;
+			variableName = cache.getVariableName(variable);
 		}
-		case GT: 
-		{
-			Value arg2 = thread.getStack().pop();
-			Value arg1 = thread.getStack().pop();
-			if(arg1.getType().supportsOperation(Operations.GT)) {
-				Value result = arg1.getType().perform(context, Operations.GT, arg1, arg2);
-				thread.getStack().push(result);
+		//TODO: Replace this and move to types
+		if(variableName == null) {
+			variableName = program.getString(variable);
+		}
+		Value theValue = null;
+		Object[] layouts = new Object[callStack.size()];
+		boolean cacheable = true;
+		for(int frame = 0; frame < callStack.size(); frame++) {
+			GVMObject object = heap.getObject(callStack.getScope(frame));
+			layouts[frame] = object.getLayout();
+			cacheable &= layouts[frame] != null;
+			if(object.hasValue(variableName)) {
+				theValue = object.getValue(variableName);
+				if(cacheable) {
+					code.setSiteCache(site, new ScopeCache(variable, variableName, Arrays.copyOf(layouts, frame + 1), object.getSlot(variableName)));
+				}
+				break;
 			}
-			else thread.handleException( "Type "+arg1.getType().getName()+" does not support GT.", context);
-			break;
 		}
-		case JMP: 
-		{
-			int pc = thread.getBytecode().readInt();
-			thread.getBytecode().seek(pc);
-			break;
+		if(theValue == null) {
+			GVMObject vo = heap.getObject(callStack.getScope(callStack.size()-1));
+			theValue = vo.getValue(variableName);
 		}
-		case CJMP: 
+		stack.push(theValue);
+		return true;
+	}
+
+	private boolean executeHalt(GVMThread thread, ValueStack stack, GVMContext context) {
+		thread.markThreadFinished();
+		this.killThread(thread);
+		return false;
+	}
+
+	private boolean executeNot(GVMThread thread, ValueStack stack, GVMContext context) {
+		Value arg1 = stack.pop();
+		if(arg1.getType().supportsOperation(Operations.NOT)) {
+			Value result = arg1.getType().perform(context, Operations.NOT, arg1, (Value)null);
+			stack.push(result);
+		}
+		else thread.handleException( "Type "+arg1.getType().getName()+" does not support NOT.", context);
+		return true;
+	}
+
+	private boolean executeJmp(GVMThread thread, ValueStack stack, GVMContext context) {
+		int pc = thread.fetch();
+		thread.setProgramCounter(pc);
+		return true;
+	}
+
+	private boolean executeCjmp(GVMThread thread, ValueStack stack, GVMContext context) {
+		int cond = stack.getValue(stack.size()-1);
+		stack.drop(1);
+		int jump = thread.fetch();
+		//TODO: check if we want to make the positive check an operation
+		if( cond > 0)
 		{
-			Value cond = thread.getStack().pop();
-			int jump = thread.getBytecode().readInt();
-			//TODO: check if we want to make the positive check an operation
-			if( cond.getValue() > 0)
-			{
-				thread.getBytecode().seek(jump);
-			} 
-			break;
-		}			
-		case POP:
+			thread.setProgramCounter(jump);
+		}
+		return true;
+	}
+
+	private boolean executePop(GVMThread thread, ValueStack stack, GVMContext context) {
+		stack.drop(1);
+		return true;
+	}
+
+	private boolean executeNative(GVMThread thread, ValueStack stack, GVMContext context) {
+		Type argType = stack.getType(stack.size()-1);
+		int arg = stack.getValue(stack.size()-1);
+		stack.drop(1);
+		if (!argType.supportsOperation(Operations.INVOKE))
 		{
-			thread.getStack().pop();
-			break;
-		}
-		case NATIVE: {
-			Value arg = thread.getStack().pop();
-			if (!arg.getType().supportsOperation(Operations.INVOKE))
-			{
-				thread.handleException( "Type: "+arg.getType().getName()+" does not support invocation.", context);
-				break;
-			}
-			//TODO: Can we link what to invoke to the type somehow?
-			NativeMethodWrapper wrapper = program.getNativeWrappers().get( arg.getValue() );
-			List<Value> args = new ArrayList<Value>();
-			for(int i=0; i <wrapper.argumentCount() ; i++)
-				args.add( thread.getStack().pop() );
-			
-			try {
-				Value returnVal = wrapper.invoke(args , new GVMContext(this, thread));
-				thread.getStack().push(returnVal);
-			} catch(Exception e) {
-				if(e instanceof InvocationTargetException) {
-					Throwable cause = ((InvocationTargetException)e).getCause();
-					thread.handleException( cause.getMessage(), context);
-					break;
-				}
-				thread.handleException( e.getMessage(), context);
+			thread.handleException( "Type: "+argType.getName()+" does not support invocation.", context);
+			return true;
+		}
+		//TODO: Can we link what to invoke to the type somehow?
+		NativeMethodWrapper wrapper = program.getNativeWrappers().get( arg );
+		//The arguments stay on the stack until the native returns, so they are roots when it blocks
+		int argumentCount = wrapper.argumentCount();
+		int top = stack.size()-1;
+		List<Value> args = new ArrayList<Value>(argumentCount);
+		for(int i=0; i <argumentCount ; i++)
+			args.add( stack.get(top-i) );
+
+		try {
+			Value returnVal = wrapper.invoke(args , context);
+			stack.drop(argumentCount);
+			stack.push(returnVal);
+		} catch(Exception e) {
+			stack.drop(argumentCount);
+			if(e instanceof InvocationTargetException) {
+				Throwable cause = ((InvocationTargetException)e).getCause();
+				thread.handleException( cause.getMessage(), context);
+				return true;
 			}
-			this.gc.collect(heap, allThreads);
-			break;
-		}	
-		case THROW: {
-			Value arg = thread.getStack().pop();
-			Value exception = thread.getProgram().getExceptionHandler().convert(arg, context, thread.getDebugLineNumber(), thread.getLocation());
-			thread.handleExceptionObject(exception);
-			break;
-		}
-		case DEBUG: {
-			//TODO: Allow language developer to inject arbitrary debug info that will be mapped to an object.
-			int line = thread.getBytecode().readInt();
-			thread.setDebugLineNumber(line);
-			thread.setLocation(thread.getBytecode().readInt());
-			break;
-		}
-		case BREAKPOINT: {
-			System.out.println("Breakpoint current line: "+thread.getDebugLineNumber());
-			break;
-		}
-		case FORK: {
-			GVMThread newThread = thread.fork();
-			runningThreads.add(newThread);
-			break;
-		}
-		default:
-			break;
+			thread.handleException( e.getMessage(), context);
+		}
+		collectGarbageIfNeeded();
+		return true;
+	}
+
+	private boolean executeThrow(GVMThread thread, ValueStack stack, GVMContext context) {
+		Value arg = stack.pop();
+		Value exception = thread.getProgram().getExceptionHandler().convert(arg, context, thread.getDebugLineNumber(), thread.getLocation());
+		thread.handleExceptionObject(exception);
+		return true;
+	}
+
+	private boolean executeDebug(GVMThread thread, ValueStack stack, GVMContext context) {
+		//TODO: Allow language developer to inject arbitrary debug info that will be mapped to an object.
+		int line = thread.fetch();
+		thread.setDebugLineNumber(line);
+		thread.setLocation(thread.fetch());
+		return true;
+	}
+
+	private boolean executeBreakpoint(GVMThread thread, ValueStack stack, GVMContext context) {
+		System.out.println("Breakpoint current line: "+thread.getDebugLineNumber());
+		return true;
+	}
+
+	private boolean executeFork(GVMThread thread, ValueStack stack, GVMContext context) {
+		GVMThread newThread = thread.fork();
+		if(executor == null) {
+			scheduler.add(newThread);
+		} else {
+			schedule(newThread);
 		}
 		return true;
 	}
-	//TODO: Convert to enum and merge with Operations
+
+	//The byte values of the instructions, see Opcode for the operands and the type operations they map to.
 
 	//Stack manipulation
-	public static final byte NEW=1;     //Create an empty object and put reference on the stack
+	public static final byte NEW=1;     //Create an empty object of the given type and put reference on the stack
 	public static final byte LDS=2;		//Load value from the stack <pos> and put on top
-	public static final byte LDG=34;	//Load value from the stack <pos> and put on top, without using the framepointer.
+	public static final byte LDG=36;	//Load value from the stack <pos> and put on top, without using the framepointer.
 	public static final byte DUP=29;	//Duplicate the current top of the stack
 	public static final byte LDC_D=34;	//Push a value of the specific type on the stack
 	public static final byte PUT=10;		//Pop variable to set from the stack, then pop the new value from the stack. Copies the values from the latter to the first.
@@ -530,5 +1041,10 @@ public class GVM {
 	public static final byte DEBUG=32;      //Tell the VM about the code that is being executed. For deubgging purposes.
 	public static final byte BREAKPOINT=33; //Tell the VM to pause and allow for inspection of heap and stack.
 
+	//Superinstructions, created by the PeepholeOptimizer
+	public static final byte LDS_GET=38;	//LDS <pos>; LDC_D <int> <type>; GET
+	public static final byte LDC_INVOKE=39;	//LDC_D <int> <type>; INVOKE <argcount>
+	public static final byte LDC_GETDYNAMIC=40;	//LDC_D <int> <type>; GETDYNAMIC
+
 
 }
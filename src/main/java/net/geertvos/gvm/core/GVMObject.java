@@ -3,6 +3,8 @@ package net.geertvos.gvm.core;
 
 import java.util.Collection;
 
+import net.geertvos.gvm.program.GVMHeap;
+
 public interface GVMObject {
 
 	//TODO: Change interface and use Value instead of String
@@ -22,4 +24,35 @@ public interface GVMObject {
 	void preDestroy();
 
 	GVMObject clone();
+
+	/**
+	 * Called by the heap when the object is added to it. An object that keeps the heap passes every Value stored by
+	 * setValue to {@link GVMHeap#recordWrite(Value)}, so the write barrier also sees stores that do not come from PUT.
+	 * Generational and incremental collectors depend on that. By default the heap is ignored.
+	 */
+	default void setHeap(GVMHeap heap) {
+	}
+
+	/**
+	 * Returns a token that identifies the layout of this object. Objects with the same layout token store the same
+	 * fields in the same slots, so the slot of a field can be cached by the GVM. The token must change when a field
+	 * is added or removed. Objects without a stable layout return null, which disables caching.
+	 */
+	default Object getLayout() {
+		return null;
+	}
+
+	/**
+	 * Returns the slot of the field with the given name in the current layout, or -1 when there is no such field.
+	 */
+	default int getSlot(String id) {
+		return -1;
+	}
+
+	/**
+	 * Returns the Value of the field in the given slot. This is the same Value object as returned by getValue.
+	 */
+	default Value getSlotValue(int slot) {
+		throw new UnsupportedOperationException("Object has no slots.");
+	}
 }
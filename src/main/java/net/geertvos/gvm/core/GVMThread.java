@@ -1,31 +1,41 @@
 package net.geertvos.gvm.core;
 
-import java.util.Stack;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import net.geertvos.gvm.core.Type.Operations;
+import net.geertvos.gvm.program.GVMCode;
 import net.geertvos.gvm.program.GVMContext;
-import net.geertvos.gvm.program.GVMFunction;
 import net.geertvos.gvm.program.GVMHeap;
 import net.geertvos.gvm.program.GVMProgram;
-import net.geertvos.gvm.streams.RandomAccessByteStream;
 
 public class GVMThread {
 
+	public static final int MIN_PRIORITY = 1;
+	public static final int NORM_PRIORITY = 5;
+	public static final int MAX_PRIORITY = 10;
+
 	private final GVMProgram program;
 	private final GVMHeap heap;
 
 	private int framepointer;
 	private int functionPointer;
 	private int debugLineNumber = -1;
-	private final Stack<StackFrame> callStack;
-	private final Stack<Value> stack;
-	private RandomAccessByteStream executingBytecode;
+	private final CallStack callStack;
+	private final ValueStack stack;
+	//Code cursor: the shared code of the executing function and the position in it
+	private GVMCode code;
+	private int[] instructions;
+	private int programCounter;
 
 	private int location; //reference to the name of this module/file/source
+	private int priority = NORM_PRIORITY;
 
-	private CountDownLatch threadFinishedLatch = new CountDownLatch(1);
+	//Completes with this thread when it finished
+	private final CompletableFuture<GVMThread> completion = new CompletableFuture<GVMThread>();
 	private GVM gvm; 
+	//The context passed to types and natives, it only refers to the VM and this thread so it is reused for every instruction
+	private final GVMContext context;
 	
 	GVMThread(GVM gvm) {
 		this.framepointer = 0;
@@ -33,12 +43,13 @@ public class GVMThread {
 		this.debugLineNumber = -1;
 		this.heap = gvm.getHeap();
 		this.program = gvm.getProgram();
-		this.callStack = new Stack<>();
-		this.stack = new Stack<Value>();
+		this.callStack = new CallStack();
+		this.stack = new ValueStack();
 		this.gvm = gvm;
+		this.context = new GVMContext(gvm, this);
 	}
 	
-	private GVMThread(Stack<StackFrame> callStack, Stack<Value> stack, GVM gvm) {
+	private GVMThread(CallStack callStack, ValueStack stack, GVM gvm) {
 		this.framepointer = 0;
 		this.functionPointer = 0;
 		this.debugLineNumber = -1;
@@ -47,6 +58,7 @@ public class GVMThread {
 		this.stack = stack;
 		this.callStack = callStack;
 		this.gvm = gvm;
+		this.context = new GVMContext(gvm, this);
 	}
 	
 	public int getFramepointer() {
@@ -73,18 +85,56 @@ public class GVMThread {
 		this.debugLineNumber = debugLineNumber;
 	}
 
-	public RandomAccessByteStream getBytecode() {
-		return executingBytecode;
+	public GVMCode getCode() {
+		return code;
+	}
+
+	/**
+	 * Move the code cursor to the given position in the given code.
+	 */
+	public void setCode(GVMCode code, int programCounter) {
+		this.code = code;
+		this.instructions = code.getInstructions();
+		this.programCounter = programCounter;
+	}
+
+	public int getProgramCounter() {
+		return programCounter;
+	}
+
+	public void setProgramCounter(int programCounter) {
+		this.programCounter = programCounter;
 	}
 
-	public void setBytecode(RandomAccessByteStream bytecode) {
-		this.executingBytecode = bytecode;
+	/**
+	 * Read the next opcode or operand and move the program counter.
+	 */
+	public int fetch() {
+		return instructions[programCounter++];
+	}
+
+	public int getPriority() {
+		return priority;
+	}
+
+	/**
+	 * Set the priority, used by the scheduler to decide how long this thread runs per turn.
+	 */
+	public void setPriority(int priority) {
+		if( priority < MIN_PRIORITY || priority > MAX_PRIORITY ) {
+			throw new IllegalArgumentException("Priority out of range: "+priority);
+		}
+		this.priority = priority;
 	}
 
 	public GVMProgram getProgram() {
 		return program;
 	}
 
+	public GVMContext getContext() {
+		return context;
+	}
+
 	public int getLocation() {
 		return location;
 	}
@@ -93,13 +143,35 @@ public class GVMThread {
 		this.location = location;
 	}
 
-	public Stack<Value> getStack() {
+	public ValueStack getStack() {
 		return stack;
 	}
 
-	public Stack<StackFrame> getCallStack() {
+	public CallStack getCallStack() {
 		return callStack;
 	}
+
+	/**
+	 * Save the state of the executing function on the call stack, before control is transferred to another function.
+	 * @param scope Heap reference to the scope object of the called function
+	 * @param scopeType The type of the scope reference
+	 */
+	void pushFrame(int scope, Type scopeType) {
+		callStack.push(programCounter, framepointer, functionPointer, debugLineNumber, location, scope, scopeType);
+	}
+
+	/**
+	 * Restore the state of the calling function from the top frame and remove that frame.
+	 */
+	void popFrame() {
+		int top = callStack.size() - 1;
+		setDebugLineNumber(callStack.getLineNumber(top));
+		setFunctionPointer(callStack.getCallingFunction(top));
+		setFramepointer(callStack.getFramePointer(top));
+		setLocation(callStack.getLocation(top));
+		setCode(program.getCode(functionPointer), callStack.getProgramCounter(top));
+		callStack.pop();
+	}
 	
 	private boolean peel()
 	{
@@ -111,26 +183,32 @@ public class GVMThread {
 		while( callStack.size() > getFramepointer() )
 			callStack.pop();
 		
-		StackFrame frame =  callStack.pop();
-		setDebugLineNumber(frame.getLineNumber());
-		setFunctionPointer(frame.getCallingFunction()); //Function pointer
-		setFramepointer(frame.getFramePointer());
-		setLocation(frame.getLocation());
-		int pc = frame.getProgramCounter(); //PC
-		setBytecode(program.getFunction(getFunctionPointer()).getBytecode().clone());
-		getBytecode().seek(pc);
+		popFrame();
 		return true;
 	}
 	
 	void markThreadFinished() {
-		threadFinishedLatch.countDown();
+		completion.complete(this);
 	}
-	
+
+	/**
+	 * The thread was stopped by an error in the VM.
+	 */
+	void markThreadFailed(Throwable error) {
+		completion.completeExceptionally(error);
+	}
+
+	CompletableFuture<GVMThread> getCompletion() {
+		return completion;
+	}
+
 	void awaitFinished() {
 		try {
-			threadFinishedLatch.await();
+			completion.get();
 		} catch (InterruptedException e) {
 			e.printStackTrace();
+		} catch (ExecutionException e) {
+			//The error is reported trough the future
 		}
 	}
 	
@@ -148,14 +226,13 @@ public class GVMThread {
 	void handleExceptionObject(Value exception)
 	{
 		//Locate the catch block (if there is one)
-		GVMFunction f = program.getFunction(getFunctionPointer());
-		int catchBlock = f.getExceptionHandler(getBytecode().getPointerPosition());
+		int catchBlock = code.getExceptionHandler(programCounter);
 		if( catchBlock > -1 )
 		{
 			//Catch block located, push error message on the stack
 			getStack().push(exception);
 			//And relocate the program counter
-			getBytecode().seek(catchBlock);
+			programCounter = catchBlock;
 		} else {
 			//No catch block found, see if we can peel off the current function from the stack
 			if( peel() )
@@ -177,29 +254,26 @@ public class GVMThread {
 		}
 	}
 
-	@SuppressWarnings("unchecked")
 	public GVMThread fork() {
-		Stack<StackFrame> newCallStack = (Stack<StackFrame>) getCallStack().clone(); 
+		CallStack newCallStack = getCallStack().copy();
 
-		StackFrame toclone = newCallStack.pop();
-		Value v = toclone.getScope();
-		GVMObject object = heap.getObject(v.getValue());
+		int top = newCallStack.size() - 1;
+		GVMObject object = heap.getObject(newCallStack.getScope(top));
 		GVMObject clonedScope = object.clone();
 		int ref = heap.addObject(clonedScope);
-		Value newScope = new Value(ref, v.getType());
-		newCallStack.add(new StackFrame(toclone.getProgramCounter(), toclone.getFramePointer(), toclone.getCallingFunction(), toclone.getLineNumber(), toclone.getLocation(), newScope));
+		newCallStack.setScope(top, ref);
 
-		Stack<Value> newStack = (Stack<Value>) getStack().clone();
+		ValueStack newStack = getStack().copy();
 		GVMThread thread = new GVMThread(newCallStack, newStack, gvm);
 		gvm.spawnThread(thread);
-		thread.setBytecode(this.executingBytecode.clone());
-		thread.executingBytecode.seek(this.executingBytecode.getPointerPosition());
+		thread.setCode(code, programCounter);
 		thread.setDebugLineNumber(debugLineNumber);
 		thread.setFramepointer(framepointer);
 		thread.setFunctionPointer(functionPointer);
 		thread.setLocation(location);
-		this.stack.push(new Value(0, new BooleanType(), "Fork return value"));
-		thread.stack.push(new Value(1, new BooleanType(), "Fork return value"));
+		thread.setPriority(priority);
+		this.stack.push(0, BooleanType.INSTANCE);
+		thread.stack.push(1, BooleanType.INSTANCE);
 		return thread;
 	}
 
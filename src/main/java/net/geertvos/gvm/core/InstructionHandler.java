@@ -0,0 +1,18 @@
+package net.geertvos.gvm.core;
+
+import net.geertvos.gvm.program.GVMContext;
+
+/**
+ * Executes a single instruction. The GVM keeps a table of handlers indexed by opcode.
+ * The opcode has already been fetched, the handler fetches its own operands trough the thread.
+ *
+ * @author geertvos
+ */
+public interface InstructionHandler {
+
+	/**
+	 * @return false when the thread has finished
+	 */
+	boolean execute(GVMThread thread, ValueStack stack, GVMContext context);
+
+}
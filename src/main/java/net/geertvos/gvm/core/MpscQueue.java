@@ -0,0 +1,64 @@
+package net.geertvos.gvm.core;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock free queue for many producers and a single consumer. A producer swaps itself in as the tail with a single
+ * atomic operation and then links the previous tail to it. Only the consumer moves the head, so poll needs no atomic
+ * operations. The role of consumer may move to another thread, as long as that hand over is synchronized.
+ *
+ * @author geertvos
+ */
+final class MpscQueue<E> {
+
+	private static final class Node<E> {
+		private E value;
+		private volatile Node<E> next;
+
+		Node(E value) {
+			this.value = value;
+		}
+	}
+
+	private final AtomicReference<Node<E>> tail;
+	//The last consumed node, its next node holds the first element
+	private volatile Node<E> head;
+
+	MpscQueue() {
+		Node<E> stub = new Node<E>(null);
+		head = stub;
+		tail = new AtomicReference<Node<E>>(stub);
+	}
+
+	/**
+	 * Add an element. Can be called by any thread.
+	 */
+	void offer(E value) {
+		Node<E> node = new Node<E>(value);
+		Node<E> previous = tail.getAndSet(node);
+		previous.next = node;
+	}
+
+	/**
+	 * Remove the first element. Only called by the consumer.
+	 * @return The element, or null when the queue is empty or the first element is not linked yet
+	 */
+	E poll() {
+		Node<E> next = head.next;
+		if (next == null) {
+			return null;
+		}
+		E value = next.value;
+		next.value = null;
+		head = next;
+		return value;
+	}
+
+	/**
+	 * Returns true when there is no element that can be polled. An offer that completed before this call is seen.
+	 */
+	boolean isEmpty() {
+		return head.next == null;
+	}
+
+}
@@ -0,0 +1,110 @@
+package net.geertvos.gvm.core;
+
+import net.geertvos.gvm.core.Type.Operations;
+
+/**
+ * Describes the instruction set of the GVM: the byte value of each opcode, the operands it takes and the type
+ * operation it maps to. The decoder and the dispatch table of the GVM are built from this enum.
+ *
+ * @author geertvos
+ */
+public enum Opcode {
+
+	//Stack manipulation
+	NEW(GVM.NEW, Operations.NEW, Operand.TYPE),
+	LDS(GVM.LDS, Operand.INT),
+	LDG(GVM.LDG, Operand.INT),
+	DUP(GVM.DUP),
+	LDC_D(GVM.LDC_D, Operand.INT, Operand.TYPE),
+	PUT(GVM.PUT),
+	POP(GVM.POP),
+	GET(GVM.GET, Operations.GET),
+	GETDYNAMIC(GVM.GETDYNAMIC),
+
+	//Arithmetic
+	ADD(GVM.ADD, Operations.ADD),
+	SUB(GVM.SUB, Operations.SUB),
+	MULT(GVM.MULT, Operations.MULT),
+	DIV(GVM.DIV, Operations.DIV),
+	MOD(GVM.MOD, Operations.MOD),
+
+	//Logic
+	AND(GVM.AND, Operations.AND),
+	OR(GVM.OR, Operations.OR),
+	NOT(GVM.NOT, Operations.NOT),
+	EQL(GVM.EQL, Operations.EQL),
+	GT(GVM.GT, Operations.GT),
+	LT(GVM.LT, Operations.LT),
+
+	//Control flow
+	NATIVE(GVM.NATIVE),
+	INVOKE(GVM.INVOKE, Operations.INVOKE, Operand.INT),
+	RETURN(GVM.RETURN),
+	CJMP(GVM.CJMP, Operand.JUMP),
+	JMP(GVM.JMP, Operand.JUMP),
+	THROW(GVM.THROW),
+	HALT(GVM.HALT),
+	FORK(GVM.FORK),
+
+	//Debug
+	DEBUG(GVM.DEBUG, Operand.INT, Operand.INT),
+	BREAKPOINT(GVM.BREAKPOINT),
+
+	//Superinstructions
+	LDS_GET(GVM.LDS_GET, Operations.GET, Operand.INT, Operand.INT, Operand.TYPE),
+	LDC_INVOKE(GVM.LDC_INVOKE, Operations.INVOKE, Operand.INT, Operand.TYPE, Operand.INT),
+	LDC_GETDYNAMIC(GVM.LDC_GETDYNAMIC, Operand.INT, Operand.TYPE);
+
+	/**
+	 * The kinds of operands in the bytecode. All of them take a single int in the decoded code.
+	 */
+	public enum Operand {
+		INT,	//4 byte integer
+		TYPE,	//type name, decoded to an index in the type constant pool
+		JUMP,	//4 byte code position, decoded to a position in the decoded code
+	}
+
+	private static final Opcode[] BY_CODE = new Opcode[256];
+	static {
+		for (Opcode opcode : values()) {
+			BY_CODE[opcode.code & 0xFF] = opcode;
+		}
+	}
+
+	private final byte code;
+	private final Operations operation;
+	private final Operand[] operands;
+
+	private Opcode(byte code, Operand... operands) {
+		this(code, null, operands);
+	}
+
+	private Opcode(byte code, Operations operation, Operand... operands) {
+		this.code = code;
+		this.operation = operation;
+		this.operands = operands;
+	}
+
+	public byte getCode() {
+		return code;
+	}
+
+	/**
+	 * The type operation performed by this instruction, or null when it does not map to one.
+	 */
+	public Operations getOperation() {
+		return operation;
+	}
+
+	public Operand[] getOperands() {
+		return operands;
+	}
+
+	/**
+	 * Returns the opcode for the given byte value, or null when it is not a known instruction.
+	 */
+	public static Opcode forCode(int code) {
+		return BY_CODE[code & 0xFF];
+	}
+
+}
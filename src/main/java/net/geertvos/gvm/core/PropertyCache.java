@@ -0,0 +1,69 @@
+package net.geertvos.gvm.core;
+
+/**
+ * The inline cache of a GET instruction. It maps the layout of the objects seen by the instruction to the slot of the
+ * field that was read. The cache is monomorphic for the first layout and becomes polymorphic when other layouts show up.
+ * After MAX_LAYOUTS layouts, or when the instruction reads different field names, the cache is megamorphic and the
+ * instruction keeps using the generic GET. Instances are immutable, an update replaces the whole cache.
+ *
+ * @author geertvos
+ */
+final class PropertyCache {
+
+	static final int MAX_LAYOUTS = 4;
+	static final PropertyCache MEGAMORPHIC = new PropertyCache(null, 0, new Object[0], new int[0]);
+
+	private final Type nameType;
+	private final int name;
+	private final Object[] layouts;
+	private final int[] slots;
+
+	private PropertyCache(Type nameType, int name, Object[] layouts, int[] slots) {
+		this.nameType = nameType;
+		this.name = name;
+		this.layouts = layouts;
+		this.slots = slots;
+	}
+
+	static PropertyCache monomorphic(Type nameType, int name, Object layout, int slot) {
+		return new PropertyCache(nameType, name, new Object[] { layout }, new int[] { slot });
+	}
+
+	boolean isMegamorphic() {
+		return this == MEGAMORPHIC;
+	}
+
+	boolean matches(Type nameType, int name) {
+		return this.nameType == nameType && this.name == name;
+	}
+
+	/**
+	 * Returns the cached slot for the given layout, or -1 when the layout is not cached.
+	 */
+	int lookup(Object layout) {
+		for (int i = 0; i < layouts.length; i++) {
+			if (layouts[i] == layout) {
+				return slots[i];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns a cache that also contains the given layout. A megamorphic cache stays megamorphic.
+	 */
+	PropertyCache add(Object layout, int slot) {
+		int size = layouts.length;
+		if (isMegamorphic() || size == MAX_LAYOUTS) {
+			return MEGAMORPHIC;
+		}
+		Object[] newLayouts = new Object[size + 1];
+		int[] newSlots = new int[size + 1];
+		System.arraycopy(layouts, 0, newLayouts, 0, size);
+		System.arraycopy(slots, 0, newSlots, 0, size);
+		newLayouts[size] = layout;
+		newSlots[size] = slot;
+		return new PropertyCache(nameType, name, newLayouts, newSlots);
+	}
+
+}
@@ -0,0 +1,41 @@
+package net.geertvos.gvm.core;
+
+import java.util.function.IntBinaryOperator;
+
+import net.geertvos.gvm.program.GVMContext;
+
+/**
+ * A specialized implementation of a binary operation for one combination of operand types. It works on the int
+ * payloads of the operands and produces a value of a fixed type, so no Value objects are needed.
+ * Quick operations are obtained with {@link Type#quicken(Type.Operations, Type)} and cached per instruction site by the GVM.
+ *
+ * @author geertvos
+ */
+public interface QuickOperation {
+
+	/**
+	 * The type of the values produced by this operation.
+	 */
+	Type getResultType();
+
+	int perform(GVMContext context, int thisValue, int otherValue);
+
+	/**
+	 * Create a quick operation from a function on the int payloads.
+	 */
+	static QuickOperation of(final Type resultType, final IntBinaryOperator operator) {
+		return new QuickOperation() {
+
+			@Override
+			public Type getResultType() {
+				return resultType;
+			}
+
+			@Override
+			public int perform(GVMContext context, int thisValue, int otherValue) {
+				return operator.applyAsInt(thisValue, otherValue);
+			}
+		};
+	}
+
+}
@@ -0,0 +1,45 @@
+package net.geertvos.gvm.core;
+
+/**
+ * The site cache of a quickened binary operation. It remembers the operand types seen by the instruction and the
+ * quick operation for them. When the types change the site is quickened again, until it has missed too often.
+ * After that the site keeps using the generic path. Instances are immutable, a miss replaces the whole site.
+ *
+ * @author geertvos
+ */
+final class QuickenedSite {
+
+	static final int MAX_MISSES = 8;
+
+	private final Type thisType;
+	private final Type otherType;
+	private final QuickOperation operation;
+	private final int misses;
+
+	QuickenedSite(Type thisType, Type otherType, QuickOperation operation, int misses) {
+		this.thisType = thisType;
+		this.otherType = otherType;
+		this.operation = operation;
+		this.misses = misses;
+	}
+
+	boolean matches(Type thisType, Type otherType) {
+		return this.thisType == thisType && this.otherType == otherType;
+	}
+
+	/**
+	 * The quick operation for the cached types, null when the types do not have one.
+	 */
+	QuickOperation getOperation() {
+		return operation;
+	}
+
+	boolean isMegamorphic() {
+		return misses >= MAX_MISSES;
+	}
+
+	QuickenedSite miss(Type thisType, Type otherType, QuickOperation operation) {
+		return new QuickenedSite(thisType, otherType, operation, misses + 1);
+	}
+
+}
@@ -0,0 +1,46 @@
+package net.geertvos.gvm.core;
+
+import java.util.ArrayDeque;
+
+/**
+ * Runs the threads in turn from a FIFO ready queue. The priority of a thread scales its quantum: a thread with
+ * {@link GVMThread#MAX_PRIORITY} runs twice as many instructions per turn as one with {@link GVMThread#NORM_PRIORITY}.
+ * Every runnable thread gets a turn in every round, so a low priority thread is slowed down but never starved.
+ *
+ * @author geertvos
+ */
+public class RoundRobinScheduler implements Scheduler {
+
+	private final ArrayDeque<GVMThread> ready = new ArrayDeque<GVMThread>();
+	private final int quantum;
+
+	public RoundRobinScheduler() {
+		this(1024);
+	}
+
+	/**
+	 * @param quantum The number of instructions per turn of a thread with normal priority
+	 */
+	public RoundRobinScheduler(int quantum) {
+		if( quantum < 1 ) {
+			throw new IllegalArgumentException("Quantum must be at least 1: "+quantum);
+		}
+		this.quantum = quantum;
+	}
+
+	@Override
+	public void add(GVMThread thread) {
+		ready.addLast(thread);
+	}
+
+	@Override
+	public GVMThread next() {
+		return ready.pollFirst();
+	}
+
+	@Override
+	public int getQuantum(GVMThread thread) {
+		return Math.max(1, quantum * thread.getPriority() / GVMThread.NORM_PRIORITY);
+	}
+
+}
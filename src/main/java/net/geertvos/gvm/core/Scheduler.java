@@ -0,0 +1,30 @@
+package net.geertvos.gvm.core;
+
+/**
+ * Decides which GVM thread runs next and how many instructions it executes before another thread gets a turn.
+ * When the GVM interleaves its threads on a single Java thread, add and next are only called by that thread. A thread
+ * that used up its quantum and did not finish is added again, a finished thread is not, so removing a thread from the
+ * ready queue never needs a search.
+ *
+ * @author geertvos
+ */
+public interface Scheduler {
+
+	/**
+	 * Make the given thread runnable.
+	 */
+	void add(GVMThread thread);
+
+	/**
+	 * Remove the next thread to run from the ready queue.
+	 * @return The thread, or null when no thread is runnable
+	 */
+	GVMThread next();
+
+	/**
+	 * The number of instructions the given thread executes before another thread gets a turn. Also used in parallel
+	 * mode, where it can be called from any worker.
+	 */
+	int getQuantum(GVMThread thread);
+
+}
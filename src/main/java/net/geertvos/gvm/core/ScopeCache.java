@@ -0,0 +1,53 @@
+package net.geertvos.gvm.core;
+
+import net.geertvos.gvm.program.GVMHeap;
+
+/**
+ * The resolution cache of a GETDYNAMIC instruction. GETDYNAMIC searches the scope objects of the call stack from the
+ * bottom frame up, so the result depends on every scope below the one that has the variable. The cache remembers the
+ * frame and slot the variable was found in, together with the layouts of the scope objects up to and including that
+ * frame. While those layouts are the same, the lower scopes still do not have the variable and the slot is still valid.
+ * Instances are immutable, a miss replaces the whole cache.
+ *
+ * @author geertvos
+ */
+final class ScopeCache {
+
+	private final int name;
+	private final String variableName;
+	private final Object[] layouts;
+	private final int slot;
+
+	ScopeCache(int name, String variableName, Object[] layouts, int slot) {
+		this.name = name;
+		this.variableName = variableName;
+		this.layouts = layouts;
+		this.slot = slot;
+	}
+
+	/**
+	 * Returns the resolved name of the string constant, or null when this cache is for a different name.
+	 */
+	String getVariableName(int name) {
+		return this.name == name ? variableName : null;
+	}
+
+	/**
+	 * Returns the variable when the scopes on the call stack still have the cached layouts, otherwise null.
+	 */
+	Value lookup(GVMHeap heap, CallStack callStack, int name) {
+		int frame = layouts.length - 1;
+		if (this.name != name || callStack.size() <= frame) {
+			return null;
+		}
+		GVMObject scope = null;
+		for (int i = 0; i <= frame; i++) {
+			scope = heap.getObject(callStack.getScope(i));
+			if (scope.getLayout() != layouts[i]) {
+				return null;
+			}
+		}
+		return scope.getSlotValue(slot);
+	}
+
+}
@@ -0,0 +1,73 @@
+package net.geertvos.gvm.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A Shape describes the layout of a {@link ShapedObject}: the names of its fields and the slot each field is stored in.
+ * Shapes form a tree. The root is the empty shape and adding a field moves an object to a child shape. Objects
+ * that get the same fields in the same order share the same shape, so the field names and slot table are stored once.
+ * Shapes are immutable, except for the table of children which is safe for concurrent use.
+ *
+ * @author geertvos
+ */
+public final class Shape {
+
+	public static final Shape EMPTY = new Shape();
+
+	private final String[] keys;
+	private final Map<String, Integer> slots;
+	private final Map<String, Shape> transitions = new ConcurrentHashMap<String, Shape>();
+
+	private Shape() {
+		this.keys = new String[0];
+		this.slots = Collections.emptyMap();
+	}
+
+	private Shape(Shape parent, String key) {
+		int size = parent.keys.length;
+		this.keys = Arrays.copyOf(parent.keys, size + 1);
+		this.keys[size] = key;
+		Map<String, Integer> slots = new HashMap<String, Integer>(parent.slots);
+		slots.put(key, size);
+		this.slots = slots;
+	}
+
+	/**
+	 * Returns the slot of the given field, or -1 when this shape does not have the field.
+	 */
+	public int getSlot(String key) {
+		Integer slot = slots.get(key);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * Returns the shape with the given field added. The new field is stored in the slot after the last slot of this shape.
+	 */
+	public Shape addField(String key) {
+		Shape shape = transitions.get(key);
+		if (shape == null) {
+			shape = transitions.computeIfAbsent(key, k -> new Shape(this, k));
+		}
+		return shape;
+	}
+
+	/**
+	 * The number of fields in this shape.
+	 */
+	public int size() {
+		return keys.length;
+	}
+
+	/**
+	 * The field names in slot order.
+	 */
+	public List<String> getKeys() {
+		return Collections.unmodifiableList(Arrays.asList(keys));
+	}
+
+}
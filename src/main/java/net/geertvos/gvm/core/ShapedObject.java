@@ -0,0 +1,154 @@
+package net.geertvos.gvm.core;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import net.geertvos.gvm.program.GVMHeap;
+
+/**
+ * A GVMObject that stores its fields in an array of slots, described by a shared {@link Shape}.
+ * The object itself only holds a reference to its shape and the Value per slot, the field names are shared with all
+ * objects of the same shape. The shape is used as layout token, so GET instructions can cache the slot of a field.
+ *
+ * Like other objects, reading a field that does not exist creates it with an undefined value. Stores through setValue
+ * pass the write barrier of the heap the object is on.
+ *
+ * @author geertvos
+ */
+public class ShapedObject implements GVMObject {
+
+	private Shape shape;
+	private Value[] slots;
+	private GVMHeap heap;
+
+	public ShapedObject() {
+		this(Shape.EMPTY);
+	}
+
+	/**
+	 * Create an object that will get the fields of the given shape. Use this when many objects are created with the
+	 * same fields, to allocate the slots once. The fields are undefined.
+	 */
+	public ShapedObject(Shape shape) {
+		this.shape = Shape.EMPTY;
+		this.slots = new Value[Math.max(shape.size(), 4)];
+		for (String key : shape.getKeys()) {
+			getValue(key);
+		}
+	}
+
+	private ShapedObject(Shape shape, Value[] slots) {
+		this.shape = shape;
+		this.slots = slots;
+	}
+
+	@Override
+	public void setValue(String id, Value v) {
+		int slot = shape.getSlot(id);
+		if (slot < 0) {
+			slot = addField(id);
+		}
+		//Shared constants can not be assigned to, the field gets its own Value
+		if (v != null && v.isConstant()) {
+			v = new Value(v.getValue(), v.getType());
+		}
+		slots[slot] = v;
+		if (heap != null) {
+			heap.recordWrite(v);
+		}
+	}
+
+	@Override
+	public Value getValue(String id) {
+		int slot = shape.getSlot(id);
+		if (slot < 0) {
+			slot = addField(id);
+			slots[slot] = new Value();
+		}
+		return slots[slot];
+	}
+
+	@Override
+	public boolean hasValue(String id) {
+		return shape.getSlot(id) >= 0;
+	}
+
+	/**
+	 * Returns a view on the slots, no copy is made.
+	 */
+	@Override
+	public Collection<Value> getValues() {
+		final Value[] values = slots;
+		final int size = shape.size();
+		return new AbstractList<Value>() {
+
+			@Override
+			public Value get(int index) {
+				return values[index];
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	@Override
+	public Collection<String> getKeys() {
+		return shape.getKeys();
+	}
+
+	@Override
+	public void setHeap(GVMHeap heap) {
+		this.heap = heap;
+	}
+
+	@Override
+	public void preDestroy() {
+	}
+
+	/**
+	 * The clone shares the shape and gets a copy of every Value, so fields can be modified independently.
+	 */
+	@Override
+	public GVMObject clone() {
+		int size = shape.size();
+		Value[] copy = new Value[slots.length];
+		for (int i = 0; i < size; i++) {
+			Value value = slots[i];
+			copy[i] = value == null ? null : new Value(value.getValue(), value.getType());
+		}
+		return new ShapedObject(shape, copy);
+	}
+
+	@Override
+	public Object getLayout() {
+		return shape;
+	}
+
+	@Override
+	public int getSlot(String id) {
+		return shape.getSlot(id);
+	}
+
+	@Override
+	public Value getSlotValue(int slot) {
+		return slots[slot];
+	}
+
+	public Shape getShape() {
+		return shape;
+	}
+
+	private int addField(String id) {
+		shape = shape.addField(id);
+		int slot = shape.size() - 1;
+		if (slot == slots.length) {
+			slots = Arrays.copyOf(slots, slots.length * 2);
+		}
+		return slot;
+	}
+
+}
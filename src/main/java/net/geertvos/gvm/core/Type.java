@@ -15,7 +15,27 @@ public interface Type {
 	
 	Value perform(GVMContext context, Operations op, Value thisValue, Value otherValue);
 
-	//TODO: Merge the Operations enum with the OP codes
+	/**
+	 * Returns a specialized implementation of a binary operation for when this type is the first operand and the
+	 * given type the second. The GVM caches it per instruction and uses it as long as the operand types match.
+	 * The result must be the same as calling perform. By default there is no specialized implementation.
+	 * @return the quick operation, or null when there is none for these types
+	 */
+	default QuickOperation quicken(Operations op, Type otherType) {
+		return null;
+	}
+
+	/**
+	 * Returns true when GET on values of this type reads a field from the heap object the value refers to, using the
+	 * string constant in the other value as field name. In other words, GET behaves as
+	 * heap.getObject(value).getValue(program.getString(name)). The GVM can then cache the slot of the field per
+	 * instruction, for objects that expose a layout. By default GET is not cached.
+	 */
+	default boolean isGetCacheable() {
+		return false;
+	}
+
+	//The instructions that map to these operations are described by Opcode
 	enum Operations {
 		ADD,
 		SUB,
@@ -30,7 +50,14 @@ public interface Type {
 		GT,
 		GET,
 		INVOKE, 
-		NEW,
+		NEW;
+
+		/**
+		 * The bit of this operation in an operation bitmask.
+		 */
+		public long mask() {
+			return 1L << ordinal();
+		}
 	}
 	
 	boolean isInstance(Type otherType);
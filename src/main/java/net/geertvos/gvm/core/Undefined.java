@@ -2,39 +2,36 @@ package net.geertvos.gvm.core;
 
 import net.geertvos.gvm.program.GVMContext;
 
-public class Undefined implements Type {
+public class Undefined extends AbstractType {
 
-	@Override
-	public String getName() {
-		return "Undefined";
+	public static final int TYPE_ID = 1;
+	public static final Undefined INSTANCE = new Undefined();
+
+	public Undefined() {
+		super(TYPE_ID, Operations.EQL);
 	}
 
 	@Override
-	public boolean supportsOperation(Operations op) {
-		if(op.equals(Operations.EQL)) {
-			return true;
-		}
-		return false;
+	public String getName() {
+		return "Undefined";
 	}
 
 	@Override
 	public Value perform(GVMContext context, Operations op, Value thisValue, Value otherValue) {
 		if(op.equals(Operations.EQL)) {
-			if(otherValue.getType() instanceof Undefined) { 
-				return new Value(1, new BooleanType());
-			} else {
-				return new Value(0, new BooleanType());
-			}
+			return Value.valueOf(otherValue.getType() instanceof Undefined);
 		}
 		throw new IllegalArgumentException("Operation "+op+" not supported on Undefined.");
 	}
 
 	@Override
-	public boolean isInstance(Type otherType) {
-		if(otherType.getName().equals(getName())) {
-			return true;
+	public QuickOperation quicken(Operations op, Type otherType) {
+		if(op.equals(Operations.EQL)) {
+			//The result only depends on the type of the other value
+			final int result = otherType instanceof Undefined ? 1 : 0;
+			return QuickOperation.of(BooleanType.INSTANCE, (a, b) -> result);
 		}
-		return false;
+		return null;
 	}
 
 }
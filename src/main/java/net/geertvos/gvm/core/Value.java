@@ -3,6 +3,11 @@ package net.geertvos.gvm.core;
 
 public class Value {
 
+	//Shared immutable values
+	public static final Value TRUE = new ConstantValue(1, BooleanType.INSTANCE);
+	public static final Value FALSE = new ConstantValue(0, BooleanType.INSTANCE);
+	public static final Value UNDEFINED = new ConstantValue(0, Undefined.INSTANCE);
+
 	private Type type;
 	private int value;
 	private String comment;
@@ -24,7 +29,21 @@ public class Value {
 	}
 
 	public Value() {
-		this.type = new Undefined();
+		this.type = Undefined.INSTANCE;
+	}
+
+	/**
+	 * Returns the shared constant for the given boolean.
+	 */
+	public static Value valueOf(boolean value) {
+		return value ? TRUE : FALSE;
+	}
+
+	/**
+	 * Constants are shared and cannot be modified.
+	 */
+	public boolean isConstant() {
+		return false;
 	}
 
 	public int getValue() {
@@ -0,0 +1,176 @@
+package net.geertvos.gvm.core;
+
+import java.util.Arrays;
+
+/**
+ * The operand stack of a GVMThread. Slots are stored in parallel arrays: an int payload and a Type tag.
+ * Pushing a constant or a primitive result does not allocate and none of the operations are synchronized.
+ *
+ * Instructions like PUT mutate a Value in place, so a slot can also hold a Value object (a cell). A cell is created
+ * when a Value is pushed or when a slot is loaded as a Value with get/peek. After that the slot keeps referring to
+ * the same cell, so every alias sees the update, just like the Value objects on the old stack.
+ * Shared constants are copied into a new cell before they are handed out by get/peek, so they are never modified.
+ *
+ * @author geertvos
+ */
+public class ValueStack {
+
+	private int[] values;
+	private Type[] types;
+	private Value[] cells;
+	private int size = 0;
+
+	public ValueStack() {
+		this(256);
+	}
+
+	public ValueStack(int capacity) {
+		this.values = new int[capacity];
+		this.types = new Type[capacity];
+		this.cells = new Value[capacity];
+	}
+
+	/**
+	 * Push a primitive value. No Value object is created.
+	 */
+	public void push(int value, Type type) {
+		if (size == values.length) {
+			grow();
+		}
+		values[size] = value;
+		types[size] = type;
+		cells[size] = null;
+		size++;
+	}
+
+	/**
+	 * Push a Value. The slot refers to the given object, so a PUT on it is visible trough the slot.
+	 */
+	public void push(Value value) {
+		if (size == values.length) {
+			grow();
+		}
+		cells[size] = value;
+		types[size] = null;
+		size++;
+	}
+
+	/**
+	 * Pop the top of the stack as a Value. Only allocates when the slot holds a primitive.
+	 */
+	public Value pop() {
+		int index = --size;
+		Value cell = cells[index];
+		if (cell != null) {
+			cells[index] = null;
+			return cell;
+		}
+		Type type = types[index];
+		types[index] = null;
+		return new Value(values[index], type);
+	}
+
+	/**
+	 * Discard the given number of slots.
+	 */
+	public void drop(int count) {
+		int newSize = size - count;
+		if (newSize < 0) {
+			throw new IllegalStateException("Stack underflow");
+		}
+		for (int i = newSize; i < size; i++) {
+			cells[i] = null;
+			types[i] = null;
+		}
+		size = newSize;
+	}
+
+	/**
+	 * Move the top of the stack to the given index and discard all slots above it. Used to leave a return value.
+	 */
+	public void moveTopTo(int index) {
+		int top = size - 1;
+		if (index != top) {
+			values[index] = values[top];
+			types[index] = types[top];
+			cells[index] = cells[top];
+		}
+		drop(size - index - 1);
+	}
+
+	public Value peek() {
+		return get(size - 1);
+	}
+
+	/**
+	 * Returns the Value in the given slot. A primitive slot or a constant is converted to a cell first, so repeated calls return the same mutable object.
+	 */
+	public Value get(int index) {
+		if (index >= size || index < 0) {
+			throw new ArrayIndexOutOfBoundsException("Array index out of range: " + index);
+		}
+		Value cell = cells[index];
+		if (cell == null) {
+			cell = new Value(values[index], types[index]);
+			cells[index] = cell;
+			types[index] = null;
+		} else if (cell.isConstant()) {
+			cell = new Value(cell.getValue(), cell.getType());
+			cells[index] = cell;
+			types[index] = null;
+		}
+		return cell;
+	}
+
+	public int getValue(int index) {
+		Value cell = cells[index];
+		return cell != null ? cell.getValue() : values[index];
+	}
+
+	public Type getType(int index) {
+		Value cell = cells[index];
+		return cell != null ? cell.getType() : types[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Copy this stack. All slots are converted to cells first, so both stacks share the same Value objects.
+	 */
+	public ValueStack copy() {
+		for (int i = 0; i < size; i++) {
+			get(i);
+		}
+		ValueStack copy = new ValueStack(values.length);
+		System.arraycopy(cells, 0, copy.cells, 0, size);
+		copy.size = size;
+		return copy;
+	}
+
+	private void grow() {
+		int capacity = values.length * 2;
+		values = Arrays.copyOf(values, capacity);
+		types = Arrays.copyOf(types, capacity);
+		cells = Arrays.copyOf(cells, capacity);
+	}
+
+	/**
+	 * For debug purposes
+	 */
+	public String toString() {
+		StringBuilder builder = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+			builder.append(getValue(i)).append(':').append(getType(i));
+		}
+		return builder.append(']').toString();
+	}
+}
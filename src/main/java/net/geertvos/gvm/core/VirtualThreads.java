@@ -0,0 +1,50 @@
+package net.geertvos.gvm.core;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to the virtual threads of newer Java runtimes. The GVM is built for Java 8, so the executor is looked up
+ * by reflection.
+ *
+ * @author geertvos
+ */
+public final class VirtualThreads {
+
+	private static final Method NEW_EXECUTOR = lookup();
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * Returns true when the Java runtime supports virtual threads.
+	 */
+	public static boolean isAvailable() {
+		return NEW_EXECUTOR != null;
+	}
+
+	/**
+	 * Create an executor that starts a new virtual thread for every task.
+	 * @throws UnsupportedOperationException when the Java runtime has no virtual threads
+	 */
+	public static ExecutorService newExecutor() {
+		if (NEW_EXECUTOR == null) {
+			throw new UnsupportedOperationException("Virtual threads need Java 21 or newer, running on " + System.getProperty("java.version"));
+		}
+		try {
+			return (ExecutorService) NEW_EXECUTOR.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			throw new UnsupportedOperationException("Unable to create a virtual thread executor", e);
+		}
+	}
+
+	private static Method lookup() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+}
@@ -77,6 +77,11 @@ public class DebugInfo {
 						out.println("LDS          " + arg);
 						break;
 					}
+					case GVM.LDG: {
+						int arg = bc.readInt();
+						out.println("LDG          " + arg);
+						break;
+					}
 					case GVM.DUP: {
 						out.println("DUP");
 						break;
@@ -219,6 +224,11 @@ public class DebugInfo {
 					out.println("LDS " + arg);
 					break;
 				}
+				case GVM.LDG: {
+					int arg = bytecode.readInt();
+					out.println("LDG " + arg);
+					break;
+				}
 				case GVM.DUP:
 					out.println("DUP");
 					break;
@@ -0,0 +1,44 @@
+package net.geertvos.gvm.gc;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import net.geertvos.gvm.core.GVMThread;
+import net.geertvos.gvm.gc.GarbageCollectionEvent.Cause;
+import net.geertvos.gvm.program.GVMHeap;
+
+/**
+ * Keeps the listeners of a garbage collector.
+ *
+ * @author geertvos
+ */
+public abstract class AbstractGarbageCollector implements GarbageCollector {
+
+	private final List<GarbageCollectionListener> listeners = new CopyOnWriteArrayList<GarbageCollectionListener>();
+
+	@Override
+	public void collect(GVMHeap heap, Collection<GVMThread> threads) {
+		collect(heap, threads, Cause.EXPLICIT);
+	}
+
+	@Override
+	public abstract void collect(GVMHeap heap, Collection<GVMThread> threads, Cause cause);
+
+	@Override
+	public void addListener(GarbageCollectionListener listener) {
+		listeners.add(listener);
+	}
+
+	@Override
+	public void removeListener(GarbageCollectionListener listener) {
+		listeners.remove(listener);
+	}
+
+	protected void fireCollected(GarbageCollectionEvent event) {
+		for( GarbageCollectionListener listener : listeners ) {
+			listener.collected(event);
+		}
+	}
+
+}
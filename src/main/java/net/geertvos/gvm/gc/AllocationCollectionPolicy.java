@@ -0,0 +1,68 @@
+package net.geertvos.gvm.gc;
+
+import net.geertvos.gvm.gc.GarbageCollectionEvent.Cause;
+import net.geertvos.gvm.program.GVMHeap;
+
+/**
+ * Collects after a number of allocations since the last collection. The number is derived from the objects that
+ * survived the last collection and a target live ratio: with a ratio of 0.5 the heap may grow to twice the live
+ * objects before the next collection. When the live set shrinks the budget shrinks with it, but never below the
+ * minimum. A collection is also started when the heap reaches the heap limit. When the live objects alone fill the
+ * heap up to the limit, the limit is raised to what the target live ratio allows for them, so the policy does not
+ * collect at every check. It drops back once the live set is below the heap limit again.
+ *
+ * @author geertvos
+ */
+public class AllocationCollectionPolicy implements CollectionPolicy {
+
+	private final int minimumAllocations;
+	private final double targetLiveRatio;
+	private final int heapLimit;
+	private int effectiveHeapLimit;
+	private long allocationsAtLastCollection = 0;
+	private long allocationBudget;
+
+	public AllocationCollectionPolicy() {
+		this(200, 0.5, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param minimumAllocations The least number of allocations between two collections
+	 * @param targetLiveRatio The fraction of the heap that should be live right before a collection, between 0 and 1
+	 * @param heapLimit The heap size that always starts a collection
+	 */
+	public AllocationCollectionPolicy(int minimumAllocations, double targetLiveRatio, int heapLimit) {
+		if( targetLiveRatio <= 0 || targetLiveRatio >= 1 ) {
+			throw new IllegalArgumentException("Target live ratio must be between 0 and 1: "+targetLiveRatio);
+		}
+		this.minimumAllocations = minimumAllocations;
+		this.targetLiveRatio = targetLiveRatio;
+		this.heapLimit = heapLimit;
+		this.effectiveHeapLimit = heapLimit;
+		this.allocationBudget = minimumAllocations;
+	}
+
+	@Override
+	public boolean shouldCollect(GVMHeap heap) {
+		return heap.getAllocationCount() - allocationsAtLastCollection >= allocationBudget || heap.size() >= effectiveHeapLimit;
+	}
+
+	@Override
+	public Cause getCause(GVMHeap heap) {
+		return heap.size() >= effectiveHeapLimit ? Cause.HEAP_LIMIT : Cause.ALLOCATION;
+	}
+
+	@Override
+	public void collected(GVMHeap heap) {
+		allocationsAtLastCollection = heap.getAllocationCount();
+		int live = heap.size();
+		long target = (long) (live / targetLiveRatio);
+		//Back off when the collection could not bring the heap below the limit
+		effectiveHeapLimit = live >= heapLimit ? (int) Math.min(Integer.MAX_VALUE, Math.max(target, live + 1L)) : heapLimit;
+		long budget = target - live;
+		//Do not plan to grow beyond the heap limit
+		budget = Math.min(budget, (long) effectiveHeapLimit - live);
+		allocationBudget = Math.max(minimumAllocations, budget);
+	}
+
+}
@@ -0,0 +1,28 @@
+package net.geertvos.gvm.gc;
+
+import net.geertvos.gvm.gc.GarbageCollectionEvent.Cause;
+import net.geertvos.gvm.program.GVMHeap;
+
+/**
+ * Decides when the GVM runs the garbage collector. The GVM asks the policy at every point where it can collect
+ * (after RETURN and NATIVE) and calls {@link GarbageCollector#collect} only when the policy agrees.
+ *
+ * @author geertvos
+ */
+public interface CollectionPolicy {
+
+	boolean shouldCollect(GVMHeap heap);
+
+	/**
+	 * The cause reported to the listeners of the garbage collector, asked when shouldCollect returned true.
+	 */
+	default Cause getCause(GVMHeap heap) {
+		return Cause.ALLOCATION;
+	}
+
+	/**
+	 * Called after the garbage collector ran, so the policy can plan the next collection.
+	 */
+	void collected(GVMHeap heap);
+
+}
@@ -0,0 +1,92 @@
+package net.geertvos.gvm.gc;
+
+/**
+ * Describes a completed garbage collection. Passed to every {@link GarbageCollectionListener} of the collector.
+ *
+ * @author geertvos
+ */
+public class GarbageCollectionEvent {
+
+	/**
+	 * Why the collection was started.
+	 */
+	public enum Cause {
+		//The allocation budget of the collection policy was used up
+		ALLOCATION,
+		//The heap reached the limit of the collection policy
+		HEAP_LIMIT,
+		//The collection was requested by the host or by native code
+		EXPLICIT
+	}
+
+	private final String collection;
+	private final Cause cause;
+	private final long pauseNanos;
+	private final int objectsBefore;
+	private final int objectsAfter;
+	private final int objectsFreed;
+	private final int rootsScanned;
+
+	public GarbageCollectionEvent(String collection, Cause cause, long pauseNanos, int objectsBefore, int objectsAfter, int objectsFreed, int rootsScanned) {
+		this.collection = collection;
+		this.cause = cause;
+		this.pauseNanos = pauseNanos;
+		this.objectsBefore = objectsBefore;
+		this.objectsAfter = objectsAfter;
+		this.objectsFreed = objectsFreed;
+		this.rootsScanned = rootsScanned;
+	}
+
+	/**
+	 * The kind of collection, for example "mark-and-sweep", "minor" or "major".
+	 */
+	public String getCollection() {
+		return collection;
+	}
+
+	public Cause getCause() {
+		return cause;
+	}
+
+	/**
+	 * The time the program was stopped for this collection. For an incremental collection this is the sum of all steps
+	 * of the cycle.
+	 */
+	public long getPauseNanos() {
+		return pauseNanos;
+	}
+
+	/**
+	 * The number of objects on the heap when the collection started.
+	 */
+	public int getObjectsBefore() {
+		return objectsBefore;
+	}
+
+	/**
+	 * The number of objects on the heap when the collection completed.
+	 */
+	public int getObjectsAfter() {
+		return objectsAfter;
+	}
+
+	/**
+	 * The number of objects removed from the heap. The heap does not track object sizes, so there is no byte count.
+	 */
+	public int getObjectsFreed() {
+		return objectsFreed;
+	}
+
+	/**
+	 * The number of references on the stacks, scopes and remembered set that were used as roots.
+	 */
+	public int getRootsScanned() {
+		return rootsScanned;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("GC %s (%s) %d -> %d objects, %d freed, %d roots, %.3fms", collection, cause, objectsBefore, objectsAfter, objectsFreed, rootsScanned, pauseNanos / 1000000.0);
+	}
+
+}
@@ -0,0 +1,13 @@
+package net.geertvos.gvm.gc;
+
+/**
+ * Receives an event for every completed garbage collection. Listeners are called on the thread that ran the
+ * collection, while the program is stopped, so they should return quickly.
+ *
+ * @author geertvos
+ */
+public interface GarbageCollectionListener {
+
+	void collected(GarbageCollectionEvent event);
+
+}
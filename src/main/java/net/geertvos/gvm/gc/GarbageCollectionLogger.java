@@ -0,0 +1,28 @@
+package net.geertvos.gvm.gc;
+
+import java.io.PrintStream;
+
+/**
+ * Prints every collection to a stream. Add it to a collector to get the output the collectors used to print by
+ * default.
+ *
+ * @author geertvos
+ */
+public class GarbageCollectionLogger implements GarbageCollectionListener {
+
+	private final PrintStream out;
+
+	public GarbageCollectionLogger() {
+		this(System.err);
+	}
+
+	public GarbageCollectionLogger(PrintStream out) {
+		this.out = out;
+	}
+
+	@Override
+	public void collected(GarbageCollectionEvent event) {
+		out.println(event);
+	}
+
+}
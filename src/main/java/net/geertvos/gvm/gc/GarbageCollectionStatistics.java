@@ -0,0 +1,50 @@
+package net.geertvos.gvm.gc;
+
+/**
+ * Listener that adds up the events of a garbage collector. The GVM keeps one for its collector.
+ *
+ * @author geertvos
+ */
+public class GarbageCollectionStatistics implements GarbageCollectionListener {
+
+	private long collections;
+	private long totalPauseNanos;
+	private long maxPauseNanos;
+	private long objectsFreed;
+	private long rootsScanned;
+
+	@Override
+	public synchronized void collected(GarbageCollectionEvent event) {
+		collections++;
+		totalPauseNanos += event.getPauseNanos();
+		maxPauseNanos = Math.max(maxPauseNanos, event.getPauseNanos());
+		objectsFreed += event.getObjectsFreed();
+		rootsScanned += event.getRootsScanned();
+	}
+
+	public synchronized long getCollections() {
+		return collections;
+	}
+
+	public synchronized long getTotalPauseNanos() {
+		return totalPauseNanos;
+	}
+
+	public synchronized long getMaxPauseNanos() {
+		return maxPauseNanos;
+	}
+
+	public synchronized long getObjectsFreed() {
+		return objectsFreed;
+	}
+
+	public synchronized long getRootsScanned() {
+		return rootsScanned;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%d collections, %.3fms total pause, %.3fms max pause, %d objects freed", collections, totalPauseNanos / 1000000.0, maxPauseNanos / 1000000.0, objectsFreed);
+	}
+
+}
@@ -2,6 +2,7 @@ package net.geertvos.gvm.gc;
 import java.util.Collection;
 
 import net.geertvos.gvm.core.GVMThread;
+import net.geertvos.gvm.gc.GarbageCollectionEvent.Cause;
 import net.geertvos.gvm.program.GVMHeap;
 
 
@@ -9,4 +10,35 @@ public interface GarbageCollector {
 
 	void collect(GVMHeap heap, Collection<GVMThread> threads);
 
+	/**
+	 * Collect garbage. The cause is passed on to the listeners, by default it is ignored.
+	 */
+	default void collect(GVMHeap heap, Collection<GVMThread> threads, Cause cause) {
+		collect(heap, threads);
+	}
+
+	/**
+	 * Called by the GVM between instructions at a regular interval. Incremental collectors do a bounded amount of work
+	 * here. By default nothing is done.
+	 */
+	default void step(GVMHeap heap, Collection<GVMThread> threads) {
+	}
+
+	/**
+	 * True while a cycle started by collect is not finished yet. Only incremental collectors return true.
+	 */
+	default boolean isCollecting() {
+		return false;
+	}
+
+	/**
+	 * Add a listener that is told about every completed collection. Collectors that do not report collections
+	 * ignore the listener.
+	 */
+	default void addListener(GarbageCollectionListener listener) {
+	}
+
+	default void removeListener(GarbageCollectionListener listener) {
+	}
+
 }
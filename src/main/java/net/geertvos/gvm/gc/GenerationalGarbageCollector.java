@@ -0,0 +1,140 @@
+package net.geertvos.gvm.gc;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import net.geertvos.gvm.core.CallStack;
+import net.geertvos.gvm.core.GVMObject;
+import net.geertvos.gvm.core.GVMThread;
+import net.geertvos.gvm.core.Type.Operations;
+import net.geertvos.gvm.core.Value;
+import net.geertvos.gvm.core.ValueStack;
+import net.geertvos.gvm.gc.GarbageCollectionEvent.Cause;
+import net.geertvos.gvm.program.GVMHeap;
+
+/**
+ * Generational collector with two generations. New objects are allocated in the nursery. Every collection starts with
+ * a minor collection, that marks the young objects that are reachable from the stacks, the scopes and the remembered set of
+ * the heap, without tracing the old generation. Young objects that survive are promoted to the old generation.
+ * When the old generation grows beyond its threshold a major collection traces and sweeps the whole heap.
+ *
+ * The remembered set is filled by the write barrier of the heap {@link GVMHeap#recordWrite(Value)}. PUT calls it, and
+ * so does setValue of objects that keep the heap they are on, like {@link net.geertvos.gvm.core.ShapedObject}.
+ *
+ * @author geertvos
+ */
+public class GenerationalGarbageCollector extends AbstractGarbageCollector {
+
+	private final int minimumOldGenerationTreshHold;
+	private int oldGenerationTreshHold;
+	private int[] markStack = new int[256];
+	private int markStackSize = 0;
+	private int rootsScanned;
+
+	public GenerationalGarbageCollector() {
+		this(10000);
+	}
+
+	/**
+	 * @param oldGenerationTreshHold The size of the old generation that triggers the first major collection. After a
+	 * major collection the threshold is twice the live objects, but not below this value.
+	 */
+	public GenerationalGarbageCollector(int oldGenerationTreshHold) {
+		this.minimumOldGenerationTreshHold = oldGenerationTreshHold;
+		this.oldGenerationTreshHold = oldGenerationTreshHold;
+	}
+
+	@Override
+	public void collect(GVMHeap heap, Collection<GVMThread> threads, Cause cause) {
+		if( !heap.isGenerational() ) {
+			//Everything allocated so far becomes the old generation
+			heap.setGenerational(true);
+		}
+		long start = System.nanoTime();
+		int before = heap.size();
+		rootsScanned = 0;
+		int freed = minor(heap, threads);
+		boolean major = heap.size() >= oldGenerationTreshHold;
+		if( major ) {
+			freed += major(heap, threads);
+			oldGenerationTreshHold = Math.max(minimumOldGenerationTreshHold, heap.size()*2);
+		}
+		fireCollected(new GarbageCollectionEvent(major ? "major" : "minor", cause, System.nanoTime() - start, before, heap.size(), freed, rootsScanned));
+	}
+
+	private int minor(GVMHeap heap, Collection<GVMThread> threads) {
+		long[] marks = new long[(heap.getHighWaterMark() + 63) >>> 6];
+		markRoots(heap, threads, marks, true);
+		for( Value v : heap.getRememberedSet() )
+		{
+			if( v.getType().supportsOperation(Operations.GET))
+			{
+				mark(v.getValue(), marks, heap, true);
+				rootsScanned++;
+			}
+		}
+		drain(marks, heap, true);
+		return heap.sweepNursery(marks);
+	}
+
+	private int major(GVMHeap heap, Collection<GVMThread> threads) {
+		long[] marks = new long[(heap.getHighWaterMark() + 63) >>> 6];
+		markRoots(heap, threads, marks, false);
+		drain(marks, heap, false);
+		return heap.sweep(marks);
+	}
+
+	private void markRoots(GVMHeap heap, Collection<GVMThread> threads, long[] marks, boolean youngOnly) {
+		for(GVMThread thread : threads) {
+			CallStack callStack = thread.getCallStack();
+			for(int frame = 0; frame < callStack.size(); frame++) {
+				if( callStack.getScopeType(frame).supportsOperation(Operations.GET))
+				{
+					mark(callStack.getScope(frame), marks, heap, youngOnly);
+					rootsScanned++;
+				}
+			}
+			ValueStack stack = thread.getStack();
+			for( int i=0; i<stack.size(); i++ )
+			{
+				if( stack.getType(i).supportsOperation(Operations.GET))
+				{
+					mark(stack.getValue(i), marks, heap, youngOnly);
+					rootsScanned++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Mark the object with the given id and push it on the mark stack. In a minor collection old objects are not marked,
+	 * references from old to young objects are found trough the remembered set.
+	 */
+	private void mark(int id, long[] marks, GVMHeap heap, boolean youngOnly) {
+		if( heap.getObject(id) == null || (youngOnly && !heap.isYoung(id)) )
+			return;
+		long bit = 1L << id;
+		int word = id >>> 6;
+		if( (marks[word] & bit) != 0 )
+			return;
+		marks[word] |= bit;
+		if( markStackSize == markStack.length )
+			markStack = Arrays.copyOf(markStack, markStackSize * 2);
+		markStack[markStackSize++] = id;
+	}
+
+	private void drain(long[] marks, GVMHeap heap, boolean youngOnly) {
+		while( markStackSize > 0 )
+		{
+			GVMObject o = heap.getObject(markStack[--markStackSize]);
+			for( Value v : o.getValues() )
+			{
+				if( v != null && v.getType().supportsOperation(Operations.GET))
+				{
+					mark(v.getValue(), marks, heap, youngOnly);
+				}
+			}
+		}
+	}
+
+}
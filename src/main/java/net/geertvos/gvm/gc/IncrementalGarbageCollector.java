@@ -0,0 +1,221 @@
+package net.geertvos.gvm.gc;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import net.geertvos.gvm.core.CallStack;
+import net.geertvos.gvm.core.GVMObject;
+import net.geertvos.gvm.core.GVMThread;
+import net.geertvos.gvm.core.Type.Operations;
+import net.geertvos.gvm.core.Value;
+import net.geertvos.gvm.core.ValueStack;
+import net.geertvos.gvm.gc.GarbageCollectionEvent.Cause;
+import net.geertvos.gvm.program.GVMHeap;
+import net.geertvos.gvm.program.HeapBarrier;
+
+/**
+ * Incremental tri-color mark and sweep collector. A collection cycle is started by collect, unless a cycle is still
+ * running. The work is done in steps between instructions, each step stops when the pause target is reached.
+ *
+ * Objects are white until marked. Marked objects on the gray stack still have to be scanned, the others are black.
+ * While marking, the program keeps running, so a heap barrier shades every reference that is stored (Dijkstra
+ * insertion barrier) and remembers every allocation. When the gray stack is empty the roots and the objects allocated
+ * during the cycle are scanned again and marking is finished in the same step. That final step is not bounded by the
+ * pause target: white objects that are only reachable from the stacks are traced completely in it. The sweep runs in
+ * steps again and keeps objects that are allocated while it runs.
+ *
+ * @author geertvos
+ */
+public class IncrementalGarbageCollector extends AbstractGarbageCollector implements HeapBarrier {
+
+	private enum Phase { IDLE, MARKING, SWEEPING }
+
+	private static final int SWEEP_CHUNK = 1024;
+	private static final int MARK_CHUNK = 64;
+
+	private final long pauseTargetNanos;
+	//Read without a lock by threads that check isCollecting
+	private volatile Phase phase = Phase.IDLE;
+	private long[] marks;
+	//The heap of the running cycle
+	private GVMHeap heap;
+	//Objects with an id at or above the limit did not exist when the cycle started
+	private int markLimit;
+	private int[] grayStack = new int[256];
+	private int graySize = 0;
+	private int[] allocated = new int[256];
+	private int allocatedSize = 0;
+	private int sweepCursor;
+	//Statistics of the running cycle
+	private Cause cause;
+	private long pauseNanos;
+	private int objectsBefore;
+	private int objectsFreed;
+	private int rootsScanned;
+
+	public IncrementalGarbageCollector() {
+		this(1);
+	}
+
+	/**
+	 * @param pauseTargetMillis The maximum time spent in a single step
+	 */
+	public IncrementalGarbageCollector(long pauseTargetMillis) {
+		this.pauseTargetNanos = TimeUnit.MILLISECONDS.toNanos(pauseTargetMillis);
+	}
+
+	/**
+	 * Start a collection cycle. The roots are shaded here, the rest of the work is done in steps.
+	 */
+	@Override
+	public void collect(GVMHeap heap, Collection<GVMThread> threads, Cause cause) {
+		if( phase != Phase.IDLE )
+			return;
+		long start = System.nanoTime();
+		this.cause = cause;
+		objectsBefore = heap.size();
+		objectsFreed = 0;
+		rootsScanned = 0;
+		markLimit = heap.getHighWaterMark();
+		marks = new long[(markLimit + 63) >>> 6];
+		graySize = 0;
+		allocatedSize = 0;
+		this.heap = heap;
+		heap.setBarrier(this);
+		shadeRoots(threads);
+		phase = Phase.MARKING;
+		pauseNanos = System.nanoTime() - start;
+	}
+
+	@Override
+	public boolean isCollecting() {
+		return phase != Phase.IDLE;
+	}
+
+	@Override
+	public void step(GVMHeap heap, Collection<GVMThread> threads) {
+		if( phase == Phase.IDLE )
+			return;
+		long start = System.nanoTime();
+		long deadline = start + pauseTargetNanos;
+		if( phase == Phase.MARKING ) {
+			if( !mark(heap, deadline) ) {
+				pauseNanos += System.nanoTime() - start;
+				return;
+			}
+			finishMarking(heap, threads);
+			sweepCursor = 0;
+			phase = Phase.SWEEPING;
+		}
+		while( sweepCursor < markLimit ) {
+			int to = Math.min(sweepCursor + SWEEP_CHUNK, markLimit);
+			objectsFreed += heap.sweep(marks, sweepCursor, to);
+			sweepCursor = to;
+			if( sweepCursor < markLimit && System.nanoTime() > deadline ) {
+				pauseNanos += System.nanoTime() - start;
+				return;
+			}
+		}
+		heap.setBarrier(null);
+		this.heap = null;
+		marks = null;
+		phase = Phase.IDLE;
+		pauseNanos += System.nanoTime() - start;
+		fireCollected(new GarbageCollectionEvent("incremental", cause, pauseNanos, objectsBefore, heap.size(), objectsFreed, rootsScanned));
+	}
+
+	/**
+	 * Barrier: objects allocated during the cycle are kept and scanned when marking finishes.
+	 */
+	@Override
+	public void allocated(int id) {
+		if( id < markLimit )
+			marks[id >>> 6] |= 1L << id;
+		if( phase == Phase.MARKING ) {
+			if( allocatedSize == allocated.length )
+				allocated = Arrays.copyOf(allocated, allocatedSize * 2);
+			allocated[allocatedSize++] = id;
+		}
+	}
+
+	/**
+	 * Barrier: a stored reference to a white object makes it gray, so a black object never points to a white object.
+	 */
+	@Override
+	public void written(Value value) {
+		if( phase == Phase.MARKING && value.getType().supportsOperation(Operations.GET))
+			shade(value.getValue());
+	}
+
+	/**
+	 * Scan gray objects until the gray stack is empty or the deadline has passed.
+	 * @return true when the gray stack is empty
+	 */
+	private boolean mark(GVMHeap heap, long deadline) {
+		int count = 0;
+		while( graySize > 0 ) {
+			if( ++count % MARK_CHUNK == 0 && System.nanoTime() > deadline )
+				return false;
+			scan(heap.getObject(grayStack[--graySize]));
+		}
+		return true;
+	}
+
+	private void finishMarking(GVMHeap heap, Collection<GVMThread> threads) {
+		shadeRoots(threads);
+		for( int i=0; i<allocatedSize; i++ ) {
+			GVMObject object = heap.getObject(allocated[i]);
+			if( object != null )
+				scan(object);
+		}
+		allocatedSize = 0;
+		mark(heap, Long.MAX_VALUE);
+	}
+
+	private void shadeRoots(Collection<GVMThread> threads) {
+		for(GVMThread thread : threads) {
+			CallStack callStack = thread.getCallStack();
+			for(int frame = 0; frame < callStack.size(); frame++) {
+				if( callStack.getScopeType(frame).supportsOperation(Operations.GET)) {
+					shade(callStack.getScope(frame));
+					rootsScanned++;
+				}
+			}
+			ValueStack stack = thread.getStack();
+			for( int i=0; i<stack.size(); i++ ) {
+				if( stack.getType(i).supportsOperation(Operations.GET)) {
+					shade(stack.getValue(i));
+					rootsScanned++;
+				}
+			}
+		}
+	}
+
+	private void scan(GVMObject object) {
+		for( Value v : object.getValues() ) {
+			if( v != null && v.getType().supportsOperation(Operations.GET))
+				shade(v.getValue());
+		}
+	}
+
+	/**
+	 * Make a white object gray. Objects allocated during the cycle are not tracked in the bitmap. Freed ids and
+	 * values of a type with GET that are not a reference have no object and are skipped.
+	 */
+	private void shade(int id) {
+		if( id < 0 || id >= markLimit )
+			return;
+		long bit = 1L << id;
+		int word = id >>> 6;
+		if( (marks[word] & bit) != 0 )
+			return;
+		if( heap.getObject(id) == null )
+			return;
+		marks[word] |= bit;
+		if( graySize == grayStack.length )
+			grayStack = Arrays.copyOf(grayStack, graySize * 2);
+		grayStack[graySize++] = id;
+	}
+
+}
@@ -1,71 +1,87 @@
 package net.geertvos.gvm.gc;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
 
+import net.geertvos.gvm.core.CallStack;
 import net.geertvos.gvm.core.GVMObject;
 import net.geertvos.gvm.core.GVMThread;
-import net.geertvos.gvm.core.StackFrame;
 import net.geertvos.gvm.core.Type.Operations;
 import net.geertvos.gvm.core.Value;
+import net.geertvos.gvm.core.ValueStack;
+import net.geertvos.gvm.gc.GarbageCollectionEvent.Cause;
 import net.geertvos.gvm.program.GVMHeap;
 
-public class MarkAndSweepGarbageCollector implements GarbageCollector {
+/**
+ * Mark and sweep collector. Live objects are marked in a bitmap indexed by heap id. The mark phase uses an explicit
+ * stack of ids instead of recursion, so deep object graphs do not overflow the Java stack. The sweep walks the heap
+ * table once and frees every unmarked object.
+ *
+ * @author geertvos
+ */
+public class MarkAndSweepGarbageCollector extends AbstractGarbageCollector {
 
-	private int currentHeapSizeTreshHold = 200;
+	private int[] markStack = new int[256];
+	private int markStackSize = 0;
 	
 	@Override
-	public void collect(GVMHeap heap, Collection<GVMThread> threads) {
-		if( heap.size() < currentHeapSizeTreshHold )
-			return;
-		long start = System.currentTimeMillis();
-		Set<GVMObject> alive = new HashSet<GVMObject>();
+	public void collect(GVMHeap heap, Collection<GVMThread> threads, Cause cause) {
+		long start = System.nanoTime();
+		int before = heap.size();
+		int roots = 0;
+		long[] marks = new long[(heap.getHighWaterMark() + 63) >>> 6];
 		for(GVMThread thread : threads) {
-			for(StackFrame frame : thread.getCallStack()) {
-				Value v = frame.getScope();
-				if( v.getType().supportsOperation(Operations.GET))
+			CallStack callStack = thread.getCallStack();
+			for(int frame = 0; frame < callStack.size(); frame++) {
+				if( callStack.getScopeType(frame).supportsOperation(Operations.GET))
 				{
-					GVMObject child = heap.getObject(v.getValue());
-					if(child != null) {
-						search( child , alive, heap);
-					}
+					mark(callStack.getScope(frame), marks, heap);
+					roots++;
 				}
 			}
-			for( Value v : thread.getStack() )
+			ValueStack stack = thread.getStack();
+			for( int i=0; i<stack.size(); i++ )
 			{
-				if(!alive.contains(v)) {
-					if( v.getType().supportsOperation(Operations.GET))
-					{
-						GVMObject child = heap.getObject(v.getValue());
-						if(child != null) {
-							search( child , alive, heap);
-						}
-					}
+				if( stack.getType(i).supportsOperation(Operations.GET))
+				{
+					mark(stack.getValue(i), marks, heap);
+					roots++;
 				}
 			}
+			drain(marks, heap);
 		}
-		heap.retain(alive);
-		while( heap.size() > currentHeapSizeTreshHold )
-			currentHeapSizeTreshHold = currentHeapSizeTreshHold*2;
-		System.err.println("Running GC completed");
-		long end = System.currentTimeMillis();
-		System.err.println("Took "+(end-start)+"ms");
+		int freed = heap.sweep(marks);
+		fireCollected(new GarbageCollectionEvent("mark-and-sweep", cause, System.nanoTime() - start, before, heap.size(), freed, roots));
 	}
-	
-	private void search( GVMObject o , Set<GVMObject> alive, GVMHeap heap )
-	{
-		if( !alive.contains(o) )
+
+	/**
+	 * Mark the object with the given id and push it on the mark stack, unless it is already marked or does not exist.
+	 */
+	private void mark(int id, long[] marks, GVMHeap heap) {
+		if( heap.getObject(id) == null )
+			return;
+		long bit = 1L << id;
+		int word = id >>> 6;
+		if( (marks[word] & bit) != 0 )
+			return;
+		marks[word] |= bit;
+		if( markStackSize == markStack.length )
+			markStack = Arrays.copyOf(markStack, markStackSize * 2);
+		markStack[markStackSize++] = id;
+	}
+
+	/**
+	 * Mark everything reachable from the objects on the mark stack.
+	 */
+	private void drain(long[] marks, GVMHeap heap) {
+		while( markStackSize > 0 )
 		{
-			alive.add(o);
+			GVMObject o = heap.getObject(markStack[--markStackSize]);
 			for( Value v : o.getValues() )
 			{
-				if( v.getType().supportsOperation(Operations.GET))
+				if( v != null && v.getType().supportsOperation(Operations.GET))
 				{
-					GVMObject child = heap.getObject(v.getValue());
-					if(child != null) {
-						search( child , alive, heap);
-					}
+					mark(v.getValue(), marks, heap);
 				}
 			}
 		}
@@ -0,0 +1,211 @@
+package net.geertvos.gvm.gc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.geertvos.gvm.core.CallStack;
+import net.geertvos.gvm.core.GVMObject;
+import net.geertvos.gvm.core.GVMThread;
+import net.geertvos.gvm.core.Type.Operations;
+import net.geertvos.gvm.core.Value;
+import net.geertvos.gvm.core.ValueStack;
+import net.geertvos.gvm.gc.GarbageCollectionEvent.Cause;
+import net.geertvos.gvm.program.GVMHeap;
+
+/**
+ * Mark and sweep collector that uses a ForkJoinPool. The roots of every GVMThread are marked by a separate task.
+ * Each task marks depth first with its own stack and splits off half of its stack when it grows, so idle workers
+ * can steal work. Marks are set in an atomic bitmap, so every object is scanned once. The heap table is then scanned
+ * in parallel by id range, and the dead objects are freed by the calling thread.
+ *
+ * The GVM is stopped while the collector runs. Objects are only read by the worker threads, except for
+ * {@link GVMObject#preDestroy()}, which is called by the thread that called collect.
+ *
+ * @author geertvos
+ */
+public class ParallelMarkAndSweepGarbageCollector extends AbstractGarbageCollector {
+
+	private static final int SPLIT_THRESHOLD = 256;
+	private static final int SWEEP_RANGE = 16384;
+
+	private final ForkJoinPool pool;
+
+	public ParallelMarkAndSweepGarbageCollector() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	public ParallelMarkAndSweepGarbageCollector(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	public void collect(GVMHeap heap, Collection<GVMThread> threads, Cause cause) {
+		long start = System.nanoTime();
+		int before = heap.size();
+		int roots = 0;
+		int limit = heap.getHighWaterMark();
+		AtomicLongArray marks = new AtomicLongArray((limit + 63) >>> 6);
+
+		List<MarkTask> tasks = new ArrayList<MarkTask>();
+		for(GVMThread thread : threads) {
+			int[] threadRoots = roots(thread);
+			roots += threadRoots.length;
+			tasks.add(new MarkTask(heap, marks, threadRoots));
+		}
+		pool.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+
+		int[] dead = pool.invoke(new SweepTask(heap, marks, 0, limit));
+		for( int id : dead ) {
+			heap.getObject(id).preDestroy();
+			heap.free(id);
+		}
+		fireCollected(new GarbageCollectionEvent("parallel mark-and-sweep", cause, System.nanoTime() - start, before, heap.size(), dead.length, roots));
+	}
+
+	/**
+	 * The heap ids referred to by the scopes and the stack of the given thread.
+	 */
+	private static int[] roots(GVMThread thread) {
+		int[] roots = new int[16];
+		int size = 0;
+		CallStack callStack = thread.getCallStack();
+		ValueStack stack = thread.getStack();
+		for(int frame = 0; frame < callStack.size(); frame++) {
+			if( callStack.getScopeType(frame).supportsOperation(Operations.GET)) {
+				if( size == roots.length )
+					roots = Arrays.copyOf(roots, size * 2);
+				roots[size++] = callStack.getScope(frame);
+			}
+		}
+		for( int i=0; i<stack.size(); i++ ) {
+			if( stack.getType(i).supportsOperation(Operations.GET)) {
+				if( size == roots.length )
+					roots = Arrays.copyOf(roots, size * 2);
+				roots[size++] = stack.getValue(i);
+			}
+		}
+		return Arrays.copyOf(roots, size);
+	}
+
+	/**
+	 * Set the mark bit of the given object.
+	 * @return true when the bit was set by this call, false when the object was already marked
+	 */
+	private static boolean tryMark(AtomicLongArray marks, int id) {
+		int word = id >>> 6;
+		long bit = 1L << id;
+		while( true ) {
+			long current = marks.get(word);
+			if( (current & bit) != 0 )
+				return false;
+			if( marks.compareAndSet(word, current, current | bit) )
+				return true;
+		}
+	}
+
+	private static class MarkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final GVMHeap heap;
+		private final AtomicLongArray marks;
+		//Ids that still have to be marked
+		private final int[] ids;
+
+		MarkTask(GVMHeap heap, AtomicLongArray marks, int[] ids) {
+			this.heap = heap;
+			this.marks = marks;
+			this.ids = ids;
+		}
+
+		@Override
+		protected void compute() {
+			int[] stack = Arrays.copyOf(ids, Math.max(ids.length, 16));
+			int size = ids.length;
+			List<MarkTask> children = new ArrayList<MarkTask>();
+			while( size > 0 ) {
+				if( size > SPLIT_THRESHOLD ) {
+					//Hand off the bottom half of the stack to another worker
+					int half = size / 2;
+					MarkTask child = new MarkTask(heap, marks, Arrays.copyOf(stack, half));
+					child.fork();
+					children.add(child);
+					System.arraycopy(stack, half, stack, 0, size - half);
+					size -= half;
+				}
+				int id = stack[--size];
+				GVMObject object = heap.getObject(id);
+				if( object == null || !tryMark(marks, id) )
+					continue;
+				for( Value v : object.getValues() ) {
+					if( v != null && v.getType().supportsOperation(Operations.GET)) {
+						if( size == stack.length )
+							stack = Arrays.copyOf(stack, size * 2);
+						stack[size++] = v.getValue();
+					}
+				}
+			}
+			for( MarkTask child : children ) {
+				child.join();
+			}
+		}
+	}
+
+	/**
+	 * Finds the ids of the unmarked objects in a range of the heap table.
+	 */
+	private static class SweepTask extends RecursiveTask<int[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final GVMHeap heap;
+		private final AtomicLongArray marks;
+		private final int from;
+		private final int to;
+
+		SweepTask(GVMHeap heap, AtomicLongArray marks, int from, int to) {
+			this.heap = heap;
+			this.marks = marks;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected int[] compute() {
+			if( to - from > SWEEP_RANGE ) {
+				int middle = (from + to) >>> 1;
+				SweepTask left = new SweepTask(heap, marks, from, middle);
+				left.fork();
+				int[] right = new SweepTask(heap, marks, middle, to).compute();
+				int[] result = left.join();
+				int[] merged = Arrays.copyOf(result, result.length + right.length);
+				System.arraycopy(right, 0, merged, result.length, right.length);
+				return merged;
+			}
+			int[] dead = new int[64];
+			int size = 0;
+			for( int id = from; id < to; id++ ) {
+				if( heap.getObject(id) != null && (marks.get(id >>> 6) & (1L << id)) == 0 ) {
+					if( size == dead.length )
+						dead = Arrays.copyOf(dead, size * 2);
+					dead[size++] = id;
+				}
+			}
+			return Arrays.copyOf(dead, size);
+		}
+	}
+
+}
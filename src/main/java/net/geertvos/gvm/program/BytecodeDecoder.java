@@ -0,0 +1,117 @@
+package net.geertvos.gvm.program;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.geertvos.gvm.core.Opcode;
+import net.geertvos.gvm.core.Opcode.Operand;
+import net.geertvos.gvm.streams.RandomAccessByteStream;
+
+/**
+ * Translates the byte oriented bytecode of a function into the flat int representation that is executed by the GVM.
+ * Operands are decoded once, jump targets and exception handler ranges are rewritten to positions in the decoded code.
+ * Type names are replaced by their index in the type constant pool of the program.
+ *
+ * @author geertvos
+ */
+public class BytecodeDecoder {
+
+	private final GVMProgram program;
+	private int[] code = new int[64];
+	private int length = 0;
+
+	private BytecodeDecoder(GVMProgram program) {
+		this.program = program;
+	}
+
+	public static GVMCode decode(GVMProgram program, GVMFunction function) {
+		return decode(program, function.getBytecode(), function.getExceptionHandlers());
+	}
+
+	public static GVMCode decode(GVMProgram program, RandomAccessByteStream bytecode) {
+		return decode(program, bytecode, Collections.<int[]>emptyList());
+	}
+
+	public static GVMCode decode(GVMProgram program, RandomAccessByteStream bytecode, List<int[]> exceptionHandlers) {
+		return new BytecodeDecoder(program).run(bytecode, exceptionHandlers);
+	}
+
+	private GVMCode run(RandomAccessByteStream bytecode, List<int[]> exceptionHandlers) {
+		int size = bytecode.size();
+		//Maps a byte offset to the decoded position, -1 when the offset is not the start of an instruction
+		int[] positions = new int[size + 1];
+		Arrays.fill(positions, -1);
+		List<Integer> jumps = new ArrayList<Integer>();
+
+		int oldPosition = bytecode.getPointerPosition();
+		bytecode.seek(0);
+		while (bytecode.getPointerPosition() < size) {
+			positions[bytecode.getPointerPosition()] = length;
+			byte instruction = bytecode.read();
+			emit(instruction);
+			Opcode opcode = Opcode.forCode(instruction);
+			if (opcode == null) {
+				//Unknown instructions have no operands
+				continue;
+			}
+			for (Operand operand : opcode.getOperands()) {
+				switch (operand) {
+				case TYPE:
+					emit(program.addTypeConstant(bytecode.readString()));
+					break;
+				case JUMP:
+					jumps.add(length);
+					emit(bytecode.readInt());
+					break;
+				default:
+					emit(bytecode.readInt());
+					break;
+				}
+			}
+		}
+		positions[size] = length;
+		bytecode.seek(oldPosition);
+
+		for (int jump : jumps) {
+			int target = code[jump];
+			if (target < 0 || target > size || positions[target] < 0) {
+				throw new IllegalArgumentException("Jump target " + target + " is not the start of an instruction.");
+			}
+			code[jump] = positions[target];
+		}
+
+		int[] handlers = new int[exceptionHandlers.size() * 3];
+		int h = 0;
+		for (int[] handler : exceptionHandlers) {
+			handlers[h++] = position(positions, handler[0]);
+			handlers[h++] = position(positions, handler[1]);
+			handlers[h++] = position(positions, handler[2]);
+		}
+		return new GVMCode(Arrays.copyOf(code, length), handlers);
+	}
+
+	/**
+	 * Translate a byte offset to a decoded position. Offsets inside an instruction are moved to the next instruction.
+	 */
+	private static int position(int[] positions, int offset) {
+		if (offset < 0) {
+			return offset;
+		}
+		for (int i = Math.min(offset, positions.length - 1); i < positions.length; i++) {
+			if (positions[i] >= 0) {
+				return positions[i];
+			}
+		}
+		return positions[positions.length - 1];
+	}
+
+	private void emit(int value) {
+		if (length == code.length) {
+			code = Arrays.copyOf(code, length * 2);
+		}
+		code[length++] = value;
+	}
+
+}
@@ -0,0 +1,136 @@
+package net.geertvos.gvm.program;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.geertvos.gvm.core.GVMObject;
+import net.geertvos.gvm.core.Value;
+
+/**
+ * Heap that can be shared by GVM threads that run on different Java threads. Allocation, the write barrier and the
+ * sweep methods are synchronized, so ids are handed out once and the table grows safely.
+ *
+ * Lookups are not synchronized. The objects are published in an AtomicReferenceArray that is replaced by a larger
+ * copy when it is full, so a thread that learns an id from a field that another thread wrote, finds the object without
+ * taking the lock. Objects are only freed by the garbage collector while all GVM threads are stopped at a safepoint.
+ * The write barrier only takes the lock while generations are tracked or a barrier is installed, and the size and
+ * allocation count are kept in atomic counters, so PUT and the checks of the collection policy do not contend.
+ *
+ * The objects themselves are not made thread safe. Scripts that share objects between threads depend on the object
+ * implementation of the language for that.
+ *
+ * @author geertvos
+ */
+public class ConcurrentGVMHeap extends GVMHeap {
+
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicLong allocations = new AtomicLong();
+	private volatile AtomicReferenceArray<GVMObject> table = new AtomicReferenceArray<GVMObject>(1024);
+	private HeapBarrier barrier;
+	//True when recordWrite has work to do. Changed while the GVM threads are stopped at a safepoint.
+	private volatile boolean tracking = false;
+
+	@Override
+	public synchronized int addObject(GVMObject object) {
+		int id = super.addObject(object);
+		AtomicReferenceArray<GVMObject> current = table;
+		if (id >= current.length()) {
+			AtomicReferenceArray<GVMObject> grown = new AtomicReferenceArray<GVMObject>(current.length() * 2);
+			for (int i = 0; i < current.length(); i++) {
+				grown.set(i, current.get(i));
+			}
+			current = grown;
+		}
+		current.set(id, object);
+		table = current;
+		size.incrementAndGet();
+		allocations.incrementAndGet();
+		return id;
+	}
+
+	@Override
+	public GVMObject getObject(int id) {
+		AtomicReferenceArray<GVMObject> current = table;
+		if (id < 0 || id >= current.length()) {
+			return null;
+		}
+		return current.get(id);
+	}
+
+	@Override
+	public synchronized void free(int id) {
+		if (getObject(id) != null) {
+			size.decrementAndGet();
+			table.set(id, null);
+		}
+		super.free(id);
+	}
+
+	@Override
+	public synchronized void clear() {
+		super.clear();
+		table = new AtomicReferenceArray<GVMObject>(table.length());
+		size.set(0);
+	}
+
+	@Override
+	public int size() {
+		return size.get();
+	}
+
+	@Override
+	public long getAllocationCount() {
+		return allocations.get();
+	}
+
+	@Override
+	public synchronized int sweep(long[] marks) {
+		return super.sweep(marks);
+	}
+
+	@Override
+	public synchronized int sweep(long[] marks, int from, int to) {
+		return super.sweep(marks, from, to);
+	}
+
+	@Override
+	public synchronized void setGenerational(boolean generational) {
+		super.setGenerational(generational);
+		tracking = generational || barrier != null;
+	}
+
+	@Override
+	public void recordWrite(Value value) {
+		if (!tracking) {
+			return;
+		}
+		synchronized (this) {
+			super.recordWrite(value);
+		}
+	}
+
+	@Override
+	public synchronized void setBarrier(HeapBarrier barrier) {
+		super.setBarrier(barrier);
+		this.barrier = barrier;
+		tracking = isGenerational() || barrier != null;
+	}
+
+	@Override
+	public synchronized int sweepNursery(long[] marks) {
+		return super.sweepNursery(marks);
+	}
+
+	@Override
+	public synchronized void retain(Collection<GVMObject> objects) {
+		super.retain(objects);
+	}
+
+	@Override
+	public boolean isThreadSafe() {
+		return true;
+	}
+
+}
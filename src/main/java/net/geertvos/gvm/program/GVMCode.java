@@ -0,0 +1,66 @@
+package net.geertvos.gvm.program;
+
+/**
+ * GVMCode is the pre-decoded form of a function's bytecode. Opcodes and their operands are stored as a flat int array,
+ * jump targets and exception handler ranges are expressed as positions in that array.
+ * Instances are created by the {@link BytecodeDecoder}, are never modified and are shared by all threads executing the function.
+ * The only exception are the site caches: the GVM can attach an immutable object to an instruction, for example a
+ * specialized implementation of the operation it performs. Caches are replaced as a whole, never modified.
+ *
+ * @author geertvos
+ *
+ */
+public class GVMCode {
+
+	private final int[] instructions;
+	private final int[] exceptionHandlers;
+	private final Object[] siteCaches;
+
+	public GVMCode(int[] instructions, int[] exceptionHandlers) {
+		this.instructions = instructions;
+		this.exceptionHandlers = exceptionHandlers;
+		this.siteCaches = new Object[instructions.length];
+	}
+
+	public int[] getInstructions() {
+		return instructions;
+	}
+
+	/**
+	 * Returns the cache attached to the instruction at the given position, or null when there is none.
+	 */
+	public Object getSiteCache(int position) {
+		return siteCaches[position];
+	}
+
+	public void setSiteCache(int position, Object cache) {
+		siteCaches[position] = cache;
+	}
+
+	/**
+	 * The exception handlers as triplets of start, end and catch block position.
+	 */
+	public int[] getExceptionHandlers() {
+		return exceptionHandlers;
+	}
+
+	/**
+	 * Locate the catch block for the given program counter. Same rules as {@link GVMFunction#getExceptionHandler(int)},
+	 * but expressed in decoded positions.
+	 * @param programCounter The position in the decoded instructions
+	 * @return the start of the catch block or -1 when there is none
+	 */
+	public int getExceptionHandler(int programCounter) {
+		int catchBlock = -1;
+		int distance = Integer.MAX_VALUE;
+		for (int i = 0; i < exceptionHandlers.length; i += 3) {
+			int ld = programCounter - exceptionHandlers[i];
+			if (ld > 0 && ld < distance && exceptionHandlers[i + 1] >= programCounter) {
+				distance = ld;
+				catchBlock = exceptionHandlers[i + 2];
+			}
+		}
+		return catchBlock;
+	}
+
+}
@@ -13,6 +13,7 @@ import net.geertvos.gvm.streams.RandomAccessByteStream;
 public class GVMFunction {
 
 	private RandomAccessByteStream bytecode;
+	private volatile GVMCode code;
 	private final List<String> parameters;
 	private final List<String> locals  = new ArrayList<String>();
 	private final List<ExceptionHandler> exceptionHandlers = new ArrayList<GVMFunction.ExceptionHandler>();
@@ -31,6 +32,18 @@ public class GVMFunction {
 
 	public void setBytecode(RandomAccessByteStream bytecode) {
 		this.bytecode = bytecode;
+		this.code = null;
+	}
+
+	/**
+	 * Returns the decoded form of the bytecode, or null when the function has not been decoded yet.
+	 */
+	public GVMCode getCode() {
+		return code;
+	}
+
+	public void setCode(GVMCode code) {
+		this.code = code;
 	}
 	
 	public int getExceptionHandler( int programCounter )
@@ -65,6 +78,7 @@ public class GVMFunction {
 	public void registerCatchBlock( int start , int end , int startOfCatch )
 	{
 		exceptionHandlers.add( new ExceptionHandler(start, end, startOfCatch));
+		this.code = null;
 	}
 	
 	/**
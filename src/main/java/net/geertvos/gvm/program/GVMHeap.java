@@ -1,41 +1,263 @@
 package net.geertvos.gvm.program;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 import net.geertvos.gvm.core.GVMObject;
+import net.geertvos.gvm.core.Type.Operations;
+import net.geertvos.gvm.core.Value;
 
+/**
+ * The heap of the GVM. Objects are stored in a table indexed by their id, so looking up a reference is an array load.
+ * New objects get an id from the free list when the garbage collector released one, otherwise the next unused id.
+ * The table grows when all ids are in use.
+ *
+ * For a generational collector the heap can also track generations. Objects are young when they are allocated and
+ * become old when they survive a collection. Young objects are listed in the nursery. Stores of references to young
+ * objects are recorded by the write barrier {@link #recordWrite(Value)} in the remembered set, so a minor collection
+ * only needs the roots and the remembered set instead of the whole old generation.
+ *
+ * @author geertvos
+ */
 public class GVMHeap {
 
-	private Map<Object, GVMObject> heap = new HashMap<Object, GVMObject>(); 
-	private AtomicInteger objectIdCounter = new AtomicInteger(-1);
-	
-	public Integer addObject(GVMObject object) {
-		int id = objectIdCounter.incrementAndGet();
-		heap.put(id, object);
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private GVMObject[] objects = new GVMObject[INITIAL_CAPACITY];
+	//The ids below this mark have been handed out at least once
+	private int highWaterMark = 0;
+	private int[] freeIds = new int[64];
+	private int freeCount = 0;
+	private int size = 0;
+	private long allocations = 0;
+
+	//Generations, only maintained when generational is set
+	private boolean generational = false;
+	private long[] old = new long[INITIAL_CAPACITY >>> 6];
+	private int[] nursery = new int[256];
+	private int nurserySize = 0;
+	private final Set<Value> remembered = Collections.newSetFromMap(new IdentityHashMap<Value, Boolean>());
+	private HeapBarrier barrier;
+
+	/**
+	 * Add an object to the heap.
+	 * @return the id of the object. This used to be an Integer, callers compiled against that signature must be
+	 * recompiled, the source stays compatible.
+	 */
+	public int addObject(GVMObject object) {
+		int id;
+		if (freeCount > 0) {
+			id = freeIds[--freeCount];
+		} else {
+			if (highWaterMark == objects.length) {
+				objects = Arrays.copyOf(objects, objects.length * 2);
+				old = Arrays.copyOf(old, objects.length >>> 6);
+			}
+			id = highWaterMark++;
+		}
+		objects[id] = object;
+		object.setHeap(this);
+		size++;
+		allocations++;
+		if (generational) {
+			old[id >>> 6] &= ~(1L << id);
+			if (nurserySize == nursery.length) {
+				nursery = Arrays.copyOf(nursery, nurserySize * 2);
+			}
+			nursery[nurserySize++] = id;
+		}
+		if (barrier != null) {
+			barrier.allocated(id);
+		}
 		return id;
 	}
-	
+
+	public GVMObject getObject(int id) {
+		if (id < 0 || id >= highWaterMark) {
+			return null;
+		}
+		return objects[id];
+	}
+
+	/**
+	 * Lookup by a boxed id, kept for source compatibility with callers that used the id as map key.
+	 */
 	public GVMObject getObject(Object key) {
-		return heap.get(key);
+		if (key instanceof Integer) {
+			return getObject(((Integer) key).intValue());
+		}
+		return null;
+	}
+
+	/**
+	 * Remove the object with the given id from the heap. The id will be reused for a new object.
+	 */
+	public void free(int id) {
+		if (objects[id] == null) {
+			return;
+		}
+		objects[id] = null;
+		if (freeCount == freeIds.length) {
+			freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+		}
+		freeIds[freeCount++] = id;
+		size--;
 	}
 
 	public void clear() {
-		this.heap.clear();
+		Arrays.fill(objects, 0, highWaterMark, null);
+		highWaterMark = 0;
+		freeCount = 0;
+		size = 0;
+		nurserySize = 0;
+		remembered.clear();
 	}
-	
+
+	/**
+	 * The number of objects on the heap.
+	 */
 	public int size() {
-		return heap.size();
+		return size;
+	}
+
+	/**
+	 * The total number of objects that were added to the heap.
+	 */
+	public long getAllocationCount() {
+		return allocations;
+	}
+
+	/**
+	 * Returns true when the heap can be used by GVM threads that run in parallel, see {@link ConcurrentGVMHeap}.
+	 */
+	public boolean isThreadSafe() {
+		return false;
+	}
+
+	/**
+	 * All ids are below this value. Used by the garbage collector to iterate over the table.
+	 */
+	public int getHighWaterMark() {
+		return highWaterMark;
 	}
-	
+
+	/**
+	 * Free every object that is not marked in the given bitmap. Bit i of the bitmap is bit (i % 64) of word (i / 64).
+	 * @return The number of objects freed
+	 */
+	public int sweep(long[] marks) {
+		int freed = sweep(marks, 0, highWaterMark);
+		promoteAll();
+		return freed;
+	}
+
+	/**
+	 * Free the objects with an id in the given range that are not marked in the bitmap. Used to sweep in steps.
+	 * @return The number of objects freed
+	 */
+	public int sweep(long[] marks, int from, int to) {
+		int freed = 0;
+		for (int id = from; id < to; id++) {
+			GVMObject object = objects[id];
+			if (object != null && (marks[id >>> 6] & (1L << id)) == 0) {
+				object.preDestroy();
+				free(id);
+				freed++;
+			}
+		}
+		return freed;
+	}
+
+	/**
+	 * Start or stop tracking generations. Objects that are on the heap when tracking starts are old.
+	 */
+	public void setGenerational(boolean generational) {
+		this.generational = generational;
+		promoteAll();
+	}
+
+	public boolean isGenerational() {
+		return generational;
+	}
+
+	/**
+	 * Returns true when generations are tracked and the object with the given id has not survived a collection yet.
+	 */
+	public boolean isYoung(int id) {
+		return generational && id >= 0 && id < highWaterMark && (old[id >>> 6] & (1L << id)) == 0;
+	}
+
+	/**
+	 * The number of objects allocated since the last collection.
+	 */
+	public int getNurserySize() {
+		return nurserySize;
+	}
+
+	/**
+	 * Write barrier. Must be called after a reference is stored in a Value that can be part of an object. PUT calls it,
+	 * and objects call it from setValue, see {@link GVMObject#setHeap(GVMHeap)}. When the Value refers to a young
+	 * object it is added to the remembered set.
+	 */
+	public void recordWrite(Value value) {
+		if (generational && isYoung(value.getValue()) && value.getType().supportsOperation(Operations.GET)) {
+			remembered.add(value);
+		}
+		if (barrier != null) {
+			barrier.written(value);
+		}
+	}
+
+	/**
+	 * Install a barrier that is told about allocations and stores, or null to remove it.
+	 */
+	public void setBarrier(HeapBarrier barrier) {
+		this.barrier = barrier;
+	}
+
+	/**
+	 * The Values that referred to young objects when they were written. Minor collections treat them as roots.
+	 */
+	public Collection<Value> getRememberedSet() {
+		return remembered;
+	}
+
+	/**
+	 * Free every young object that is not marked in the given bitmap and promote the others to the old generation.
+	 * @return The number of objects freed
+	 */
+	public int sweepNursery(long[] marks) {
+		int freed = 0;
+		for (int i = 0; i < nurserySize; i++) {
+			int id = nursery[i];
+			GVMObject object = objects[id];
+			if (object != null && (old[id >>> 6] & (1L << id)) == 0 && (marks[id >>> 6] & (1L << id)) == 0) {
+				object.preDestroy();
+				free(id);
+				freed++;
+			}
+		}
+		promoteAll();
+		return freed;
+	}
+
+	private void promoteAll() {
+		Arrays.fill(old, -1L);
+		nurserySize = 0;
+		remembered.clear();
+	}
+
 	public void retain(Collection<GVMObject> objects) {
-		for(GVMObject object : heap.values()) {
-			if(!objects.contains(object)) {
+		for (int id = 0; id < highWaterMark; id++) {
+			GVMObject object = this.objects[id];
+			if (object != null && !objects.contains(object)) {
 				object.preDestroy();
+				free(id);
 			}
 		}
-		this.heap.values().retainAll(objects);
+		promoteAll();
 	}
 }
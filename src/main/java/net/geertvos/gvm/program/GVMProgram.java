@@ -1,13 +1,18 @@
 package net.geertvos.gvm.program;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import net.geertvos.gvm.bridge.NativeMethodWrapper;
 import net.geertvos.gvm.bridge.ValueConverter;
+import net.geertvos.gvm.core.AbstractType;
 import net.geertvos.gvm.core.BooleanType;
 import net.geertvos.gvm.core.FunctionType;
 import net.geertvos.gvm.core.GVMExceptionHandler;
@@ -23,13 +28,29 @@ import net.geertvos.gvm.core.Undefined;
  */
 public class GVMProgram {
 
+	//Type ids are unique for the whole VM and given per type name, so every instance of a type gets the same id, also
+	//in other programs. Lower ids are reserved for the built-in types.
+	private static final AtomicInteger typeIdCounter = new AtomicInteger(16);
+	private static final ConcurrentMap<String,Integer> typeIds = new ConcurrentHashMap<String,Integer>();
+
+	static {
+		typeIds.put(BooleanType.INSTANCE.getName(), BooleanType.TYPE_ID);
+		typeIds.put(Undefined.INSTANCE.getName(), Undefined.TYPE_ID);
+		typeIds.put(FunctionType.INSTANCE.getName(), FunctionType.TYPE_ID);
+	}
+
 	private final String name;
 	private final Map<Integer,GVMFunction> functions = new HashMap<Integer,GVMFunction>();
-	private final List<String> stringConstants = new ArrayList<String>();
+	//Strings can be added while GVM threads run in parallel, so lookups use a copy on write list
+	private final List<String> stringConstants = new CopyOnWriteArrayList<String>();
 	private final Map<String,Type> types = new HashMap<String,Type>();
+	private final List<String> typeConstants = new ArrayList<String>();
+	private final Map<String,Integer> typeConstantIndex = new HashMap<String,Integer>();
+	private volatile Type[] resolvedTypeConstants = new Type[0];
 	private final GVMExceptionHandler exceptionHandler;
 	private final ValueConverter converter;
 	private final AtomicInteger functionCounter = new AtomicInteger();
+	private boolean optimizing = false;
 	
 	private List<NativeMethodWrapper> nativeWrappers = new ArrayList<NativeMethodWrapper>();
 	
@@ -37,16 +58,16 @@ public class GVMProgram {
 		this.name = name;
 		this.converter = converter;
 		this.exceptionHandler = exceptionHandler;
-		registerType(new BooleanType());
-		registerType(new Undefined());
-		registerType(new FunctionType());
+		registerType(BooleanType.INSTANCE);
+		registerType(Undefined.INSTANCE);
+		registerType(FunctionType.INSTANCE);
 	}
 
-	public void addString(String s, int index) {
+	public synchronized void addString(String s, int index) {
 		stringConstants.add(index, s);
 	}
 
-	public int addString(String s) {
+	public synchronized int addString(String s) {
 		if (!stringConstants.contains(s))
 			stringConstants.add(s);
 		return stringConstants.indexOf(s);
@@ -77,6 +98,56 @@ public class GVMProgram {
 		return functions.get(i);
 	}
 
+	/**
+	 * Returns the decoded code of function i. Functions that have not been decoded yet are decoded on first use.
+	 * Decoding is synchronized, because GVM threads that run in parallel can use a function for the first time at
+	 * the same moment and decoding adds to the type constant pool.
+	 */
+	public GVMCode getCode(int i) {
+		GVMFunction function = functions.get(i);
+		GVMCode code = function.getCode();
+		if (code == null) {
+			code = decode(function);
+		}
+		return code;
+	}
+
+	private synchronized GVMCode decode(GVMFunction function) {
+		GVMCode code = function.getCode();
+		if (code == null) {
+			code = BytecodeDecoder.decode(this, function);
+			if (optimizing) {
+				code = PeepholeOptimizer.optimize(code);
+			}
+			function.setCode(code);
+		}
+		return code;
+	}
+
+	public boolean isOptimizing() {
+		return optimizing;
+	}
+
+	/**
+	 * Enable or disable the {@link PeepholeOptimizer} for the decoded code of this program. Functions that are
+	 * already decoded are decoded again on next use.
+	 */
+	public void setOptimizing(boolean optimizing) {
+		this.optimizing = optimizing;
+		for (GVMFunction function : functions.values()) {
+			function.setCode(null);
+		}
+	}
+
+	/**
+	 * Decode all functions of this program, so no decoding is required while the program runs.
+	 */
+	public void decode() {
+		for (Integer id : functions.keySet()) {
+			getCode(id);
+		}
+	}
+
 	public List<NativeMethodWrapper> getNativeWrappers() {
 		return nativeWrappers;
 	}
@@ -125,7 +196,63 @@ public class GVMProgram {
 	}
 	
 	public void registerType(Type type) {
+		if(type instanceof AbstractType) {
+			AbstractType abstractType = (AbstractType)type;
+			if(abstractType.getTypeId() == AbstractType.UNREGISTERED) {
+				abstractType.assignTypeId(typeIds.computeIfAbsent(type.getName(), name -> typeIdCounter.getAndIncrement()));
+			}
+		}
 		this.types.put(type.getName(), type);
+		Integer index = typeConstantIndex.get(type.getName());
+		Type[] resolved = resolvedTypeConstants;
+		if(index != null && index < resolved.length) {
+			resolved[index] = type;
+		}
+	}
+
+	/**
+	 * Add a type name to the type constant pool. Instructions that refer to a type (NEW, LDC_D) use the index in this pool.
+	 * @param typeName The name of the type, the type itself does not need to be registered yet.
+	 * @return the index of the type name in the pool
+	 */
+	public synchronized int addTypeConstant(String typeName) {
+		Integer index = typeConstantIndex.get(typeName);
+		if(index != null) {
+			return index;
+		}
+		int newIndex = typeConstants.size();
+		typeConstants.add(typeName);
+		typeConstantIndex.put(typeName, newIndex);
+		return newIndex;
+	}
+
+	public List<String> getTypeConstants() {
+		return typeConstants;
+	}
+
+	/**
+	 * Returns the type at the given index in the type constant pool. The type is resolved by name on first use and cached.
+	 */
+	public Type getTypeConstant(int index) {
+		Type[] resolved = resolvedTypeConstants;
+		if(index < resolved.length) {
+			Type type = resolved[index];
+			if(type != null) {
+				return type;
+			}
+		}
+		return resolveTypeConstant(index);
+	}
+
+	private synchronized Type resolveTypeConstant(int index) {
+		Type type = getType(typeConstants.get(index));
+		Type[] resolved = resolvedTypeConstants;
+		if(index >= resolved.length) {
+			resolved = Arrays.copyOf(resolved, typeConstants.size());
+		}
+		resolved[index] = type;
+		resolvedTypeConstants = resolved;
+		return type;
 	}
 	
 	public GVMExceptionHandler getExceptionHandler() {
@@ -112,6 +112,13 @@ public class GVMProgramSerializer {
 	}
 
 	public static GVMProgram readFrom(InputStream in, GVMExceptionHandler exceptionHandler, ValueConverter converter, NativeMethodFactory nativeFactory) throws IOException {
+		return readFrom(in, exceptionHandler, converter, nativeFactory, false);
+	}
+
+	/**
+	 * Read a program and optionally enable the peephole optimizer for its decoded code.
+	 */
+	public static GVMProgram readFrom(InputStream in, GVMExceptionHandler exceptionHandler, ValueConverter converter, NativeMethodFactory nativeFactory, boolean optimize) throws IOException {
 		RandomAccessByteStream buf = new RandomAccessByteStream();
 		buf.readFrom(in);
 		buf.seek(0);
@@ -124,7 +131,9 @@ public class GVMProgramSerializer {
 		if (version != VERSION) {
 			throw new IOException("Unsupported GSVM binary version: " + version + " (expected " + VERSION + ")");
 		}
-		return readV2(buf, exceptionHandler, converter, nativeFactory);
+		GVMProgram program = readV2(buf, exceptionHandler, converter, nativeFactory);
+		program.setOptimizing(optimize);
+		return program;
 	}
 
 	private static GVMProgram readV2(RandomAccessByteStream buf, GVMExceptionHandler exceptionHandler, ValueConverter converter, NativeMethodFactory nativeFactory) throws IOException {
@@ -0,0 +1,23 @@
+package net.geertvos.gvm.program;
+
+import net.geertvos.gvm.core.Value;
+
+/**
+ * Receives allocations and reference stores on a {@link GVMHeap}. An incremental garbage collector installs a barrier
+ * while it collects, so it can keep track of the changes the program makes in the meantime.
+ *
+ * @author geertvos
+ */
+public interface HeapBarrier {
+
+	/**
+	 * Called after an object was added to the heap.
+	 */
+	void allocated(int id);
+
+	/**
+	 * Called trough {@link GVMHeap#recordWrite(Value)} after a value was stored.
+	 */
+	void written(Value value);
+
+}
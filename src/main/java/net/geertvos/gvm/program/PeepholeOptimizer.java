@@ -0,0 +1,182 @@
+package net.geertvos.gvm.program;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.geertvos.gvm.core.GVM;
+import net.geertvos.gvm.core.Opcode;
+import net.geertvos.gvm.core.Opcode.Operand;
+
+/**
+ * Rewrites decoded code into an equivalent shorter form. Common instruction sequences are fused into superinstructions:
+ * <ul>
+ * <li>LDS n; LDC_D x t; GET becomes LDS_GET n x t</li>
+ * <li>LDC_D x t; INVOKE k becomes LDC_INVOKE x t k</li>
+ * <li>LDC_D x t; GETDYNAMIC becomes LDC_GETDYNAMIC x t, the variable name is then known when the instruction is cached</li>
+ * <li>DUP; POP is removed</li>
+ * <li>A DEBUG that is directly followed by another DEBUG is removed</li>
+ * </ul>
+ * A sequence is only rewritten when no jump target or exception handler boundary points inside it.
+ * Jump targets and exception handler ranges are moved to the new positions.
+ *
+ * @author geertvos
+ */
+public class PeepholeOptimizer {
+
+	private final int[] input;
+	private final int[] starts;
+	private final boolean[] barriers;
+	private final int[] positions;
+	private final List<Integer> jumps = new ArrayList<Integer>();
+	private int[] code;
+	private int length = 0;
+
+	private PeepholeOptimizer(GVMCode code) {
+		this.input = code.getInstructions();
+		this.code = new int[input.length];
+		this.positions = new int[input.length + 1];
+		Arrays.fill(positions, -1);
+		this.barriers = new boolean[input.length + 1];
+
+		List<Integer> starts = new ArrayList<Integer>();
+		int pc = 0;
+		while (pc < input.length) {
+			starts.add(pc);
+			Opcode opcode = Opcode.forCode(input[pc]);
+			if (opcode != null) {
+				Operand[] operands = opcode.getOperands();
+				for (int i = 0; i < operands.length; i++) {
+					if (operands[i] == Operand.JUMP) {
+						mark(input[pc + 1 + i]);
+					}
+				}
+			}
+			pc += width(pc);
+		}
+		this.starts = new int[starts.size()];
+		for (int i = 0; i < this.starts.length; i++) {
+			this.starts[i] = starts.get(i);
+		}
+		for (int handler : code.getExceptionHandlers()) {
+			mark(handler);
+		}
+	}
+
+	public static GVMCode optimize(GVMCode code) {
+		return new PeepholeOptimizer(code).run(code.getExceptionHandlers());
+	}
+
+	private GVMCode run(int[] exceptionHandlers) {
+		int i = 0;
+		while (i < starts.length) {
+			int pc = starts[i];
+			if (matches(i, GVM.LDS, GVM.LDC_D, GVM.GET)) {
+				positions(i, 3);
+				emit(GVM.LDS_GET);
+				emit(input[pc + 1]);
+				emit(input[pc + 3]);
+				emit(input[pc + 4]);
+				i += 3;
+			} else if (matches(i, GVM.LDC_D, GVM.INVOKE)) {
+				positions(i, 2);
+				emit(GVM.LDC_INVOKE);
+				emit(input[pc + 1]);
+				emit(input[pc + 2]);
+				emit(input[pc + 4]);
+				i += 2;
+			} else if (matches(i, GVM.LDC_D, GVM.GETDYNAMIC)) {
+				positions(i, 2);
+				emit(GVM.LDC_GETDYNAMIC);
+				emit(input[pc + 1]);
+				emit(input[pc + 2]);
+				i += 2;
+			} else if (matches(i, GVM.DUP, GVM.POP)) {
+				positions(i, 2);
+				i += 2;
+			} else if (input[pc] == GVM.DEBUG && i + 1 < starts.length && input[starts[i + 1]] == GVM.DEBUG) {
+				//The next DEBUG overwrites the line and location, so entering here or there has the same effect
+				positions(i, 1);
+				i++;
+			} else {
+				positions(i, 1);
+				copy(i);
+				i++;
+			}
+		}
+		positions[input.length] = length;
+
+		for (int jump : jumps) {
+			code[jump] = positions[code[jump]];
+		}
+		int[] handlers = new int[exceptionHandlers.length];
+		for (int h = 0; h < handlers.length; h++) {
+			int offset = exceptionHandlers[h];
+			handlers[h] = offset < 0 || offset > input.length ? offset : positions[offset];
+		}
+		return new GVMCode(Arrays.copyOf(code, length), handlers);
+	}
+
+	/**
+	 * Returns true when the instructions starting at index i have the given opcodes and none of them, except the
+	 * first, is a jump target or exception handler boundary.
+	 */
+	private boolean matches(int i, int... opcodes) {
+		if (i + opcodes.length > starts.length) {
+			return false;
+		}
+		for (int k = 0; k < opcodes.length; k++) {
+			if (input[starts[i + k]] != opcodes[k]) {
+				return false;
+			}
+			if (k > 0 && barriers[starts[i + k]]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Map the given number of instructions starting at index i to the current output position.
+	 */
+	private void positions(int i, int count) {
+		for (int k = 0; k < count; k++) {
+			positions[starts[i + k]] = length;
+		}
+	}
+
+	private void copy(int i) {
+		int pc = starts[i];
+		emit(input[pc]);
+		Opcode opcode = Opcode.forCode(input[pc]);
+		if (opcode == null) {
+			return;
+		}
+		Operand[] operands = opcode.getOperands();
+		for (int k = 0; k < operands.length; k++) {
+			if (operands[k] == Operand.JUMP) {
+				jumps.add(length);
+			}
+			emit(input[pc + 1 + k]);
+		}
+	}
+
+	private int width(int pc) {
+		Opcode opcode = Opcode.forCode(input[pc]);
+		return opcode == null ? 1 : 1 + opcode.getOperands().length;
+	}
+
+	private void mark(int position) {
+		if (position >= 0 && position <= input.length) {
+			barriers[position] = true;
+		}
+	}
+
+	private void emit(int value) {
+		if (length == code.length) {
+			code = Arrays.copyOf(code, length * 2 + 1);
+		}
+		code[length++] = value;
+	}
+
+}
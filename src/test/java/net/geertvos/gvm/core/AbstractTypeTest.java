@@ -0,0 +1,69 @@
+package net.geertvos.gvm.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.geertvos.gvm.program.GVMContext;
+import net.geertvos.gvm.program.GVMProgram;
+
+public class AbstractTypeTest {
+
+	private static class NamedType extends AbstractType {
+
+		private final String name;
+
+		NamedType(String name) {
+			super(Operations.ADD, Operations.EQL);
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Value perform(GVMContext context, Operations op, Value thisValue, Value otherValue) {
+			return null;
+		}
+	}
+
+	@Test
+	public void instancesWithTheSameNameShareTheId() {
+		NamedType first = new NamedType("Number");
+		NamedType second = new NamedType("Number");
+		NamedType other = new NamedType("String");
+		new GVMProgram("first", null, null).registerType(first);
+		GVMProgram program = new GVMProgram("second", null, null);
+		program.registerType(second);
+		program.registerType(other);
+
+		assertEquals(first.getTypeId(), second.getTypeId());
+		assertTrue(first.isInstance(second));
+		assertTrue(second.isInstance(first));
+		assertFalse(first.isInstance(other));
+	}
+
+	@Test
+	public void unregisteredTypesCompareByName() {
+		NamedType registered = new NamedType("Point");
+		new GVMProgram("test", null, null).registerType(registered);
+		NamedType unregistered = new NamedType("Point");
+		assertEquals(AbstractType.UNREGISTERED, unregistered.getTypeId());
+		assertTrue(registered.isInstance(unregistered));
+		assertTrue(unregistered.isInstance(registered));
+	}
+
+	@Test
+	public void operationsAreStoredAsBitmask() {
+		NamedType type = new NamedType("Number");
+		assertTrue(type.supportsOperation(Type.Operations.ADD));
+		assertTrue(type.supportsOperation(Type.Operations.EQL));
+		assertFalse(type.supportsOperation(Type.Operations.GET));
+		assertTrue(BooleanType.INSTANCE.isInstance(new BooleanType()));
+	}
+
+}
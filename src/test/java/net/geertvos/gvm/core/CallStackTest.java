@@ -0,0 +1,68 @@
+package net.geertvos.gvm.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import net.geertvos.gvm.core.TestProgram.Assembler;
+
+public class CallStackTest {
+
+	@Test
+	public void framesSurviveGrowth() {
+		TestProgram test = new TestProgram();
+		CallStack stack = new CallStack();
+		for (int i = 0; i < 200; i++) {
+			stack.push(i, i + 1, i + 2, i + 3, i + 4, i + 5, test.object);
+		}
+		assertEquals(200, stack.size());
+		for (int i = 0; i < 200; i++) {
+			assertEquals(i, stack.getProgramCounter(i));
+			assertEquals(i + 1, stack.getFramePointer(i));
+			assertEquals(i + 2, stack.getCallingFunction(i));
+			assertEquals(i + 3, stack.getLineNumber(i));
+			assertEquals(i + 4, stack.getLocation(i));
+			assertEquals(i + 5, stack.getScope(i));
+			assertSame(test.object, stack.getScopeType(i));
+		}
+		stack.pop();
+		assertEquals(199, stack.size());
+	}
+
+	@Test
+	public void copyIsIndependent() {
+		TestProgram test = new TestProgram();
+		CallStack stack = new CallStack();
+		stack.push(1, 2, 3, 4, 5, 6, test.object);
+		CallStack copy = stack.copy();
+		copy.setScope(0, 7);
+		copy.push(8, 9, 10, 11, 12, 13, test.object);
+		assertEquals(6, stack.getScope(0));
+		assertEquals(1, stack.size());
+		assertEquals(2, copy.size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void popOnEmptyStackFails() {
+		new CallStack().pop();
+	}
+
+	@Test
+	public void deepRecursionReturnsThroughEveryFrame() {
+		TestProgram test = new TestProgram();
+		test.main(new Assembler().op(GVM.LDS, 0).number(500).function(1).op(GVM.INVOKE, 1).record());
+		//sum(n) = n < 1 ? 0 : n + sum(n - 1)
+		test.function(new Assembler()
+				.op(GVM.LDS, 1).number(1).op(GVM.LT).op(GVM.NOT).jump(GVM.CJMP, "recurse")
+				.number(0).op(GVM.RETURN)
+				.label("recurse")
+				.op(GVM.LDS, 1)
+				.op(GVM.LDS, 0).op(GVM.LDS, 1).number(1).op(GVM.SUB).function(1).op(GVM.INVOKE, 1)
+				.op(GVM.ADD).op(GVM.RETURN), TestProgram.parameters("n"));
+		assertEquals(Arrays.asList(125250), test.run());
+	}
+
+}
@@ -0,0 +1,273 @@
+package net.geertvos.gvm.core;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import net.geertvos.gvm.bridge.NativeMethodWrapper;
+import net.geertvos.gvm.program.BytecodeDecoder;
+import net.geertvos.gvm.program.ConcurrentGVMHeap;
+import net.geertvos.gvm.program.GVMContext;
+import net.geertvos.gvm.program.GVMFunction;
+import net.geertvos.gvm.program.GVMProgram;
+import net.geertvos.gvm.streams.RandomAccessByteStream;
+
+public class GVMTest {
+
+	private static class ObjectType extends AbstractType {
+
+		ObjectType() {
+			super(Operations.NEW, Operations.GET);
+		}
+
+		@Override
+		public String getName() {
+			return "Object";
+		}
+
+		@Override
+		public Value perform(GVMContext context, Operations op, Value arg1, Value arg2) {
+			return new Value(context.getHeap().addObject(new ShapedObject()), this);
+		}
+
+	}
+
+	private static GVMProgram program() {
+		GVMProgram program = new GVMProgram("test", null, null);
+		program.registerType(new ObjectType());
+		return program;
+	}
+
+	/**
+	 * A thread that loads a constant of a type the program does not know, which stops the thread with an error.
+	 */
+	private static GVMThread failingThread(GVM gvm) {
+		RandomAccessByteStream bytecode = new RandomAccessByteStream();
+		bytecode.write(GVM.LDC_D);
+		bytecode.writeInt(0);
+		bytecode.writeString("Missing");
+		bytecode.write(GVM.HALT);
+		bytecode.seek(0);
+		GVMThread thread = gvm.spawnThread();
+		thread.setCode(BytecodeDecoder.decode(gvm.getProgram(), bytecode), 0);
+		return thread;
+	}
+
+	private static GVMThread haltingThread(GVM gvm) {
+		RandomAccessByteStream bytecode = new RandomAccessByteStream();
+		bytecode.write(GVM.HALT);
+		bytecode.seek(0);
+		GVMThread thread = gvm.spawnThread();
+		thread.setCode(BytecodeDecoder.decode(gvm.getProgram(), bytecode), 0);
+		return thread;
+	}
+
+	/**
+	 * Function 0 calls the native with the given index and halts.
+	 */
+	private static void addMain(GVMProgram program, int nativeIndex) {
+		RandomAccessByteStream bytecode = new RandomAccessByteStream();
+		bytecode.write(GVM.LDC_D);
+		bytecode.writeInt(nativeIndex);
+		bytecode.writeString(FunctionType.INSTANCE.getName());
+		bytecode.write(GVM.NATIVE);
+		bytecode.write(GVM.POP);
+		bytecode.write(GVM.HALT);
+		program.addFunction(new GVMFunction(bytecode, Collections.<String>emptyList()));
+	}
+
+	@Test
+	public void injectReturnsWhenThreadFails() {
+		GVM gvm = new GVM(program());
+		gvm.inject(failingThread(gvm));
+
+		CompletableFuture<GVMThread> completion = gvm.submit(failingThread(gvm));
+		assertTrue(completion.isCompletedExceptionally());
+		try {
+			completion.join();
+			fail();
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+	}
+
+	@Test
+	public void runDoesNotThrowErrorsOfOtherThreads() {
+		GVMProgram program = program();
+		final CompletableFuture<?>[] submitted = new CompletableFuture<?>[1];
+		int index = program.add(new NativeMethodWrapper() {
+			@Override
+			public Value invoke(List<Value> arguments, GVMContext context) {
+				GVM gvm = context.getGVM();
+				submitted[0] = gvm.submit(failingThread(gvm));
+				return Value.UNDEFINED;
+			}
+
+			@Override
+			public int argumentCount() {
+				return 0;
+			}
+		});
+		addMain(program, index);
+		GVM gvm = new GVM(program);
+		gvm.run();
+		assertTrue(submitted[0].isCompletedExceptionally());
+	}
+
+	@Test
+	public void runThrowsErrorOfMainThread() {
+		GVMProgram program = program();
+		int index = program.add(new NativeMethodWrapper() {
+			@Override
+			public Value invoke(List<Value> arguments, GVMContext context) {
+				return Value.UNDEFINED;
+			}
+
+			@Override
+			public int argumentCount() {
+				return 0;
+			}
+		});
+		//The main function refers to a native that does not exist
+		addMain(program, index + 1);
+		GVM gvm = new GVM(program);
+		try {
+			gvm.run();
+			fail();
+		} catch (IndexOutOfBoundsException expected) {
+			//The error of the main thread is thrown by run
+		}
+	}
+
+	@Test
+	public void nativeInjectsWhileCollectionIsPending() throws Exception {
+		GVMProgram program = program();
+		final CountDownLatch inNative = new CountDownLatch(1);
+		final CountDownLatch collectionPending = new CountDownLatch(1);
+		int index = program.add(new NativeMethodWrapper() {
+			@Override
+			public Value invoke(List<Value> arguments, GVMContext context) {
+				inNative.countDown();
+				try {
+					collectionPending.await();
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+				GVM gvm = context.getGVM();
+				gvm.inject(haltingThread(gvm));
+				return Value.UNDEFINED;
+			}
+
+			@Override
+			public int argumentCount() {
+				return 0;
+			}
+		});
+		addMain(program, index);
+		final GVM gvm = new GVM(program, new ConcurrentGVMHeap());
+		ExecutorService executor = Executors.newCachedThreadPool();
+		gvm.setExecutor(executor);
+		Thread runner = new Thread(gvm::run);
+		runner.setDaemon(true);
+		runner.start();
+		assertTrue(inNative.await(5, TimeUnit.SECONDS));
+
+		//The collector waits for the native to leave the safepoint, new threads queue up behind it
+		Thread collector = new Thread(gvm::collectGarbage);
+		collector.setDaemon(true);
+		collector.start();
+		while (collector.getState() != Thread.State.WAITING) {
+			Thread.sleep(1);
+		}
+		collectionPending.countDown();
+
+		runner.join(5000);
+		collector.join(5000);
+		executor.shutdownNow();
+		assertFalse(runner.isAlive());
+		assertFalse(collector.isAlive());
+	}
+
+	@Test(timeout = 10000, expected = StackOverflowError.class)
+	public void errorInParallelThreadDoesNotHangRun() {
+		GVMProgram program = program();
+		int index = program.add(new NativeMethodWrapper() {
+			@Override
+			public Value invoke(List<Value> arguments, GVMContext context) {
+				throw new StackOverflowError();
+			}
+
+			@Override
+			public int argumentCount() {
+				return 0;
+			}
+		});
+		addMain(program, index);
+		GVM gvm = new GVM(program, new ConcurrentGVMHeap());
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			gvm.setExecutor(executor);
+			gvm.run();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void blockingNativeParksOnlyItsThreadPerTask() throws Exception {
+		GVMProgram program = program();
+		final CountDownLatch inNative = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		int index = program.add(new NativeMethodWrapper() {
+			@Override
+			public Value invoke(List<Value> arguments, GVMContext context) {
+				inNative.countDown();
+				try {
+					context.getGVM().callBlocking(() -> {
+						release.await();
+						return null;
+					});
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+				return Value.UNDEFINED;
+			}
+
+			@Override
+			public int argumentCount() {
+				return 0;
+			}
+		});
+		addMain(program, index);
+		final GVM gvm = new GVM(program, new ConcurrentGVMHeap());
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			gvm.setExecutor(executor, true);
+			Thread runner = new Thread(gvm::run);
+			runner.start();
+			assertTrue(inNative.await(5, TimeUnit.SECONDS));
+
+			//While the native blocks, the collector and other threads run
+			gvm.collectGarbage();
+			gvm.submit(haltingThread(gvm)).get(5, TimeUnit.SECONDS);
+			assertTrue(runner.isAlive());
+
+			release.countDown();
+			runner.join();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
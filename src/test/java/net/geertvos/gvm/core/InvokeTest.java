@@ -0,0 +1,64 @@
+package net.geertvos.gvm.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.geertvos.gvm.core.TestProgram.Assembler;
+
+public class InvokeTest {
+
+	/**
+	 * Function 1 computes fib(n) recursively.
+	 */
+	private static void addFib(TestProgram test) {
+		test.function(new Assembler()
+				.op(GVM.LDS, 1).number(2).op(GVM.LT).op(GVM.NOT).jump(GVM.CJMP, "recurse")
+				.op(GVM.LDS, 1).op(GVM.RETURN)
+				.label("recurse")
+				.op(GVM.LDS, 0).op(GVM.LDS, 1).number(1).op(GVM.SUB).function(1).op(GVM.INVOKE, 1)
+				.op(GVM.LDS, 0).op(GVM.LDS, 1).number(2).op(GVM.SUB).function(1).op(GVM.INVOKE, 1)
+				.op(GVM.ADD).op(GVM.RETURN), TestProgram.parameters("n"));
+	}
+
+	@Test
+	public void callerResumesAfterEachReturn() {
+		TestProgram test = new TestProgram();
+		test.main(new Assembler()
+				.op(GVM.LDS, 0).number(5).function(1).op(GVM.INVOKE, 1).record()
+				.number(7).record()
+				.op(GVM.LDS, 0).number(10).function(1).op(GVM.INVOKE, 1).record());
+		addFib(test);
+		assertEquals(Arrays.asList(5, 7, 55), test.run());
+	}
+
+	@Test
+	public void returnRestoresTheCallersLocals() {
+		TestProgram test = new TestProgram();
+		test.main(new Assembler()
+				.number(3).op(GVM.LDS, 1).op(GVM.PUT).op(GVM.POP)
+				.op(GVM.LDS, 0).number(6).function(1).op(GVM.INVOKE, 1).record()
+				.op(GVM.LDS, 1).record(), "x");
+		addFib(test);
+		assertEquals(Arrays.asList(8, 3), test.run());
+	}
+
+	@Test
+	public void forkedThreadsShareTheCode() {
+		TestProgram test = new TestProgram();
+		test.main(new Assembler()
+				.op(GVM.FORK).jump(GVM.CJMP, "child")
+				.op(GVM.LDS, 0).number(4).function(1).op(GVM.INVOKE, 1).record().op(GVM.HALT)
+				.label("child")
+				.op(GVM.LDS, 0).number(9).function(1).op(GVM.INVOKE, 1).record());
+		addFib(test);
+		List<Integer> recorded = test.run();
+		Collections.sort(recorded);
+		assertEquals(Arrays.asList(3, 34), recorded);
+	}
+
+}
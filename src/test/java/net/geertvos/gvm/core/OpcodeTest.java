@@ -0,0 +1,53 @@
+package net.geertvos.gvm.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import net.geertvos.gvm.core.TestProgram.Assembler;
+import net.geertvos.gvm.core.Type.Operations;
+
+public class OpcodeTest {
+
+	@Test
+	public void everyOpcodeIsFoundByItsCode() {
+		for (Opcode opcode : Opcode.values()) {
+			assertSame(opcode, Opcode.forCode(opcode.getCode()));
+		}
+		assertNull(Opcode.forCode(0));
+		assertNull(Opcode.forCode(255));
+	}
+
+	@Test
+	public void operationsAndOperandsAreDescribed() {
+		assertEquals(Operations.ADD, Opcode.ADD.getOperation());
+		assertNull(Opcode.HALT.getOperation());
+		assertEquals(0, Opcode.POP.getOperands().length);
+		assertEquals(Arrays.asList(Opcode.Operand.INT, Opcode.Operand.TYPE), Arrays.asList(Opcode.LDC_D.getOperands()));
+		assertEquals(Arrays.asList(Opcode.Operand.JUMP), Arrays.asList(Opcode.CJMP.getOperands()));
+	}
+
+	@Test
+	public void binaryOperationsAreDispatchedThroughTheTable() {
+		TestProgram test = new TestProgram();
+		test.main(new Assembler()
+				.number(7).number(6).op(GVM.MULT).record()
+				.number(7).number(6).op(GVM.SUB).record()
+				.number(7).number(6).op(GVM.GT).record()
+				.number(7).number(6).op(GVM.EQL).record()
+				.number(6).op(GVM.DUP).op(GVM.EQL).record());
+		assertEquals(Arrays.asList(42, 1, 1, 0, 1), test.run());
+	}
+
+	@Test
+	public void unknownInstructionsAreIgnored() {
+		TestProgram test = new TestProgram();
+		test.main(new Assembler().op((byte) 100).number(3).record());
+		assertEquals(Arrays.asList(3), test.run());
+	}
+
+}
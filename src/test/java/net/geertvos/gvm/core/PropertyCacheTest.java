@@ -0,0 +1,77 @@
+package net.geertvos.gvm.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import net.geertvos.gvm.core.TestProgram.Assembler;
+
+public class PropertyCacheTest {
+
+	/**
+	 * local.name = value
+	 */
+	private static Assembler set(Assembler code, int local, int name, int value) {
+		return code.number(value).op(GVM.LDS, local).ldc(name, "String").op(GVM.GET).op(GVM.PUT).op(GVM.POP);
+	}
+
+	/**
+	 * Calls function 1 with the given local and records the result.
+	 */
+	private static Assembler read(Assembler code, int local) {
+		return code.op(GVM.LDS, 0).op(GVM.LDS, local).function(1).op(GVM.INVOKE, 1).record();
+	}
+
+	@Test
+	public void cacheGrowsUntilItIsMegamorphic() {
+		TestProgram test = new TestProgram();
+		Shape shape = Shape.EMPTY.addField("x");
+		PropertyCache cache = PropertyCache.monomorphic(test.string, 1, shape, 0);
+		assertTrue(cache.matches(test.string, 1));
+		assertFalse(cache.matches(test.string, 2));
+		assertEquals(0, cache.lookup(shape));
+		assertEquals(-1, cache.lookup(Shape.EMPTY));
+
+		Shape other = Shape.EMPTY.addField("y").addField("x");
+		cache = cache.add(other, 1);
+		assertEquals(0, cache.lookup(shape));
+		assertEquals(1, cache.lookup(other));
+		for (int i = 0; i < PropertyCache.MAX_LAYOUTS; i++) {
+			cache = cache.add(Shape.EMPTY.addField("z" + i), 0);
+		}
+		assertTrue(cache.isMegamorphic());
+		assertTrue(cache.add(shape, 0).isMegamorphic());
+	}
+
+	@Test
+	public void getIsCorrectAcrossShapes() {
+		TestProgram test = new TestProgram();
+		int x = test.string("x");
+		Assembler main = new Assembler()
+				.object().op(GVM.LDS, 1).op(GVM.PUT).op(GVM.POP)
+				.object().op(GVM.LDS, 2).op(GVM.PUT).op(GVM.POP);
+		set(main, 1, x, 1);
+		set(main, 2, test.string("y"), 0);
+		set(main, 2, x, 2);
+		read(main, 1);
+		read(main, 2);
+		read(main, 1);
+		//Adding a field moves a to a new shape
+		set(main, 1, test.string("z"), 3);
+		read(main, 1);
+		set(main, 1, x, 10);
+		read(main, 1);
+		test.main(main, "a", "b");
+		//o.x
+		test.function(new Assembler().op(GVM.LDS, 1).ldc(x, "String").op(GVM.GET).op(GVM.RETURN), TestProgram.parameters("o"));
+
+		assertEquals(Arrays.asList(1, 2, 1, 1, 10), test.run());
+		//Every set is a new site, the read of a with a known shape comes from the cache twice
+		assertEquals(8, test.object.gets.get());
+	}
+
+}
@@ -0,0 +1,52 @@
+package net.geertvos.gvm.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import net.geertvos.gvm.core.TestProgram.Assembler;
+
+public class QuickeningTest {
+
+	private static void addLoop(TestProgram test) {
+		test.main(new Assembler()
+				.number(0).op(GVM.LDS, 1).op(GVM.PUT).op(GVM.POP)
+				.number(0).op(GVM.LDS, 2).op(GVM.PUT).op(GVM.POP)
+				.label("top").op(GVM.LDS, 1).number(10).op(GVM.LT).op(GVM.NOT).jump(GVM.CJMP, "end")
+				.op(GVM.LDS, 2).op(GVM.LDS, 1).op(GVM.ADD).op(GVM.LDS, 2).op(GVM.PUT).op(GVM.POP)
+				.op(GVM.LDS, 1).number(1).op(GVM.ADD).op(GVM.LDS, 1).op(GVM.PUT).op(GVM.POP)
+				.jump(GVM.JMP, "top")
+				.label("end").op(GVM.LDS, 2).record(), "i", "sum");
+	}
+
+	@Test
+	public void quickenedLoopSkipsThePerformCall() {
+		TestProgram quickened = new TestProgram(true);
+		addLoop(quickened);
+		assertEquals(Arrays.asList(45), quickened.run());
+		assertEquals(0, quickened.number.performed.get());
+
+		TestProgram generic = new TestProgram(false);
+		addLoop(generic);
+		assertEquals(Arrays.asList(45), generic.run());
+		assertTrue(generic.number.performed.get() >= 30);
+	}
+
+	@Test
+	public void siteFallsBackWhenTheOperandTypesChange() {
+		TestProgram test = new TestProgram();
+		test.main(new Assembler()
+				.op(GVM.LDS, 0).number(2).number(3).function(1).op(GVM.INVOKE, 2).record()
+				.op(GVM.LDS, 0).number(4).number(5).function(1).op(GVM.INVOKE, 2).record()
+				.op(GVM.LDS, 0).number(2).ldc(1, BooleanType.INSTANCE.getName()).function(1).op(GVM.INVOKE, 2).record()
+				.op(GVM.LDS, 0).number(6).number(7).function(1).op(GVM.INVOKE, 2).record());
+		//The ADD in this function is the only site that sees the Boolean
+		test.function(new Assembler().op(GVM.LDS, 1).op(GVM.LDS, 2).op(GVM.ADD).op(GVM.RETURN), TestProgram.parameters("a", "b"));
+		assertEquals(Arrays.asList(5, 9, 3, 13), test.run());
+		assertEquals(1, test.number.performed.get());
+	}
+
+}
@@ -0,0 +1,72 @@
+package net.geertvos.gvm.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import net.geertvos.gvm.core.TestProgram.Assembler;
+import net.geertvos.gvm.program.GVMHeap;
+
+public class ScopeCacheTest {
+
+	/**
+	 * Calls function 1 with the given local as this and records the result.
+	 */
+	private static Assembler call(Assembler code, int local) {
+		return code.op(GVM.LDS, local).function(1).op(GVM.INVOKE, 0).record();
+	}
+
+	private static TestProgram program(boolean optimizing) {
+		TestProgram test = new TestProgram();
+		int v = test.string("v");
+		Assembler main = new Assembler()
+				.object().op(GVM.LDS, 1).op(GVM.PUT).op(GVM.POP)
+				.object().op(GVM.LDS, 2).op(GVM.PUT).op(GVM.POP)
+				.number(7).op(GVM.LDS, 1).ldc(v, "String").op(GVM.GET).op(GVM.PUT).op(GVM.POP)
+				.number(9).op(GVM.LDS, 2).ldc(v, "String").op(GVM.GET).op(GVM.PUT).op(GVM.POP);
+		call(main, 1);
+		//Same shape, other object
+		call(main, 2);
+		//Define v in the scope of main, which is searched first
+		main.number(3).ldc(v, "String").op(GVM.GETDYNAMIC).op(GVM.PUT).op(GVM.POP);
+		call(main, 1);
+		test.main(main, "a", "b");
+		//Resolve v from the scopes on the call stack
+		test.function(new Assembler().ldc(v, "String").op(GVM.GETDYNAMIC).op(GVM.RETURN), TestProgram.parameters());
+		test.getProgram().setOptimizing(optimizing);
+		return test;
+	}
+
+	@Test
+	public void cachedLookupFollowsScopeChanges() {
+		assertEquals(Arrays.asList(7, 9, 3), program(false).run());
+	}
+
+	@Test
+	public void superinstructionUsesTheSameCache() {
+		assertEquals(Arrays.asList(7, 9, 3), program(true).run());
+	}
+
+	@Test
+	public void cacheIsKeptPerVariable() {
+		TestProgram test = new TestProgram();
+		CallStack callStack = new CallStack();
+		ShapedObject scope = new ShapedObject();
+		scope.setValue("v", new Value(5, test.number));
+		int id = test.getProgram().addString("v");
+		GVMHeap heap = new GVMHeap();
+		callStack.push(0, 0, 0, 0, 0, heap.addObject(scope), test.object);
+		ScopeCache cache = new ScopeCache(id, "v", new Object[] { scope.getLayout() }, scope.getSlot("v"));
+		assertEquals("v", cache.getVariableName(id));
+		assertNull(cache.getVariableName(id + 1));
+		assertEquals(5, cache.lookup(heap, callStack, id).getValue());
+		assertNull(cache.lookup(heap, callStack, id + 1));
+
+		scope.setValue("w", new Value());
+		assertNull(cache.lookup(heap, callStack, id));
+	}
+
+}
@@ -0,0 +1,77 @@
+package net.geertvos.gvm.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ShapedObjectTest {
+
+	@Test
+	public void storedConstantsCanBeAssigned() {
+		ShapedObject object = new ShapedObject();
+		object.setValue("flag", Value.TRUE);
+		Value field = object.getValue("flag");
+		assertFalse(field.isConstant());
+		assertTrue(field.getType().isInstance(BooleanType.INSTANCE));
+
+		field.setValue(0);
+		assertEquals(0, object.getValue("flag").getValue());
+		assertEquals(1, Value.TRUE.getValue());
+	}
+
+	@Test
+	public void objectsWithTheSameFieldsShareTheShape() {
+		ShapedObject first = new ShapedObject();
+		first.setValue("x", new Value());
+		first.setValue("y", new Value());
+		ShapedObject second = new ShapedObject();
+		second.setValue("x", new Value());
+		second.setValue("y", new Value());
+		assertSame(first.getShape(), second.getShape());
+		assertEquals(Arrays.asList("x", "y"), first.getKeys());
+
+		//Another order is another shape
+		ShapedObject third = new ShapedObject();
+		third.setValue("y", new Value());
+		third.setValue("x", new Value());
+		assertNotSame(first.getShape(), third.getShape());
+	}
+
+	@Test
+	public void fieldsAreStoredInSlots() {
+		ShapedObject object = new ShapedObject();
+		for (int i = 0; i < 20; i++) {
+			object.setValue("f" + i, new Value(i, BooleanType.INSTANCE));
+		}
+		assertEquals(20, object.getValues().size());
+		assertEquals(7, object.getSlot("f7"));
+		assertEquals(7, object.getSlotValue(object.getSlot("f7")).getValue());
+		assertEquals(-1, object.getSlot("missing"));
+		assertFalse(object.hasValue("missing"));
+
+		//Reading a missing field adds it
+		object.getValue("missing");
+		assertTrue(object.hasValue("missing"));
+		assertEquals(21, object.getShape().size());
+	}
+
+	@Test
+	public void cloneSharesTheShapeButNotTheValues() {
+		ShapedObject object = new ShapedObject();
+		object.setValue("x", new Value(1, BooleanType.INSTANCE));
+		GVMObject clone = object.clone();
+		assertSame(object.getLayout(), clone.getLayout());
+
+		clone.getValue("x").setValue(0);
+		assertEquals(1, object.getValue("x").getValue());
+		clone.setValue("y", new Value());
+		assertFalse(object.hasValue("y"));
+	}
+
+}
@@ -0,0 +1,284 @@
+package net.geertvos.gvm.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.geertvos.gvm.bridge.NativeMethodWrapper;
+import net.geertvos.gvm.program.GVMContext;
+import net.geertvos.gvm.program.GVMFunction;
+import net.geertvos.gvm.program.GVMHeap;
+import net.geertvos.gvm.program.GVMProgram;
+import net.geertvos.gvm.streams.RandomAccessByteStream;
+
+/**
+ * Builds small programs for the tests. The program knows the types Number, String and Object, and native 0 records
+ * the payload of its argument, so a test can check what a program computed.
+ *
+ * @author geertvos
+ */
+public class TestProgram {
+
+	public static class NumberType extends AbstractType {
+
+		public final AtomicInteger performed = new AtomicInteger();
+		private final boolean quickening;
+
+		NumberType(boolean quickening) {
+			super(Operations.ADD, Operations.SUB, Operations.MULT, Operations.LT, Operations.GT, Operations.EQL);
+			this.quickening = quickening;
+		}
+
+		@Override
+		public String getName() {
+			return "Number";
+		}
+
+		@Override
+		public Value perform(GVMContext context, Operations op, Value thisValue, Value otherValue) {
+			performed.incrementAndGet();
+			int x = thisValue.getValue();
+			int y = otherValue.getValue();
+			switch (op) {
+			case ADD:
+				return new Value(x + y, this);
+			case SUB:
+				return new Value(x - y, this);
+			case MULT:
+				return new Value(x * y, this);
+			case LT:
+				return Value.valueOf(x < y);
+			case GT:
+				return Value.valueOf(x > y);
+			default:
+				return Value.valueOf(x == y);
+			}
+		}
+
+		@Override
+		public QuickOperation quicken(Operations op, Type otherType) {
+			if (!quickening || !isInstance(otherType)) {
+				return null;
+			}
+			switch (op) {
+			case ADD:
+				return QuickOperation.of(this, (x, y) -> x + y);
+			case SUB:
+				return QuickOperation.of(this, (x, y) -> x - y);
+			case LT:
+				return QuickOperation.of(BooleanType.INSTANCE, (x, y) -> x < y ? 1 : 0);
+			default:
+				return null;
+			}
+		}
+	}
+
+	public static class StringType extends AbstractType {
+
+		StringType() {
+			super(Operations.EQL);
+		}
+
+		@Override
+		public String getName() {
+			return "String";
+		}
+
+		@Override
+		public Value perform(GVMContext context, Operations op, Value thisValue, Value otherValue) {
+			return Value.valueOf(thisValue.getValue() == otherValue.getValue());
+		}
+	}
+
+	/**
+	 * Objects are ShapedObjects on the heap, GET reads the field named by a String value.
+	 */
+	public static class ObjectType extends AbstractType {
+
+		public final AtomicInteger gets = new AtomicInteger();
+
+		ObjectType() {
+			super(Operations.NEW, Operations.GET, Operations.EQL);
+		}
+
+		@Override
+		public String getName() {
+			return "Object";
+		}
+
+		@Override
+		public Value perform(GVMContext context, Operations op, Value thisValue, Value otherValue) {
+			GVMHeap heap = context.getHeap();
+			switch (op) {
+			case NEW:
+				return new Value(heap.addObject(new ShapedObject()), this);
+			case GET:
+				gets.incrementAndGet();
+				return heap.getObject(thisValue.getValue()).getValue(context.getProgram().getString(otherValue.getValue()));
+			default:
+				return Value.valueOf(thisValue.getValue() == otherValue.getValue());
+			}
+		}
+
+		@Override
+		public boolean isGetCacheable() {
+			return true;
+		}
+	}
+
+	/**
+	 * Writes bytecode with labels for jumps.
+	 */
+	public static class Assembler {
+
+		private final RandomAccessByteStream bytecode = new RandomAccessByteStream();
+		private final Map<String, Integer> labels = new HashMap<String, Integer>();
+		private final Map<Integer, String> jumps = new HashMap<Integer, String>();
+
+		public Assembler op(byte instruction) {
+			bytecode.write(instruction);
+			return this;
+		}
+
+		public Assembler op(byte instruction, int argument) {
+			bytecode.write(instruction);
+			bytecode.writeInt(argument);
+			return this;
+		}
+
+		public Assembler jump(byte instruction, String label) {
+			bytecode.write(instruction);
+			jumps.put(bytecode.getPointerPosition(), label);
+			bytecode.writeInt(0);
+			return this;
+		}
+
+		public Assembler ldc(int value, String type) {
+			bytecode.write(GVM.LDC_D);
+			bytecode.writeInt(value);
+			bytecode.writeString(type);
+			return this;
+		}
+
+		public Assembler number(int value) {
+			return ldc(value, "Number");
+		}
+
+		public Assembler function(int id) {
+			return ldc(id, FunctionType.INSTANCE.getName());
+		}
+
+		public Assembler object() {
+			bytecode.write(GVM.NEW);
+			bytecode.writeString("Object");
+			return this;
+		}
+
+		/**
+		 * Call native 0, which records the value on top of the stack.
+		 */
+		public Assembler record() {
+			return function(0).op(GVM.NATIVE).op(GVM.POP);
+		}
+
+		public Assembler label(String label) {
+			labels.put(label, bytecode.getPointerPosition());
+			return this;
+		}
+
+		public RandomAccessByteStream assemble() {
+			for (Map.Entry<Integer, String> jump : jumps.entrySet()) {
+				bytecode.set(jump.getKey(), labels.get(jump.getValue()));
+			}
+			bytecode.seek(0);
+			return bytecode;
+		}
+	}
+
+	public final NumberType number;
+	public final StringType string = new StringType();
+	public final ObjectType object = new ObjectType();
+	private final GVMProgram program;
+	private final List<Integer> recorded = Collections.synchronizedList(new ArrayList<Integer>());
+
+	public TestProgram() {
+		this(true);
+	}
+
+	public TestProgram(boolean quickening) {
+		number = new NumberType(quickening);
+		program = new GVMProgram("test", new GVMExceptionHandler() {
+			@Override
+			public Value convert(String message, GVMContext context, int line, int location) {
+				return new Value(program.addString(message), string);
+			}
+
+			@Override
+			public Value convert(Value value, GVMContext context, int line, int location) {
+				return value;
+			}
+		}, null);
+		program.registerType(number);
+		program.registerType(string);
+		program.registerType(object);
+		program.add(new NativeMethodWrapper() {
+			@Override
+			public Value invoke(List<Value> arguments, GVMContext context) {
+				recorded.add(arguments.get(0).getValue());
+				return Value.UNDEFINED;
+			}
+
+			@Override
+			public int argumentCount() {
+				return 1;
+			}
+		});
+	}
+
+	public GVMProgram getProgram() {
+		return program;
+	}
+
+	public int string(String value) {
+		return program.addString(value);
+	}
+
+	/**
+	 * Add a function. The first function added is the main function that run starts.
+	 * @return the id of the function
+	 */
+	public int function(Assembler code, List<String> parameters, String... locals) {
+		GVMFunction function = new GVMFunction(code.assemble(), new ArrayList<String>(parameters));
+		for (String local : locals) {
+			function.registerLocalVariable(local);
+		}
+		return program.addFunction(function);
+	}
+
+	public int main(Assembler code, String... locals) {
+		return function(code.op(GVM.HALT), Collections.<String>emptyList(), locals);
+	}
+
+	public static List<String> parameters(String... names) {
+		return Arrays.asList(names);
+	}
+
+	/**
+	 * Run the program on a new GVM with the default heap.
+	 * @return the recorded values
+	 */
+	public List<Integer> run() {
+		return run(new GVM(program));
+	}
+
+	public List<Integer> run(GVM gvm) {
+		recorded.clear();
+		gvm.run();
+		return new ArrayList<Integer>(recorded);
+	}
+
+}
@@ -0,0 +1,76 @@
+package net.geertvos.gvm.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import net.geertvos.gvm.core.TestProgram.Assembler;
+
+public class ValueStackTest {
+
+	@Test
+	public void growsBeyondCapacity() {
+		TestProgram test = new TestProgram();
+		ValueStack stack = new ValueStack(2);
+		for (int i = 0; i < 100; i++) {
+			stack.push(i, test.number);
+		}
+		assertEquals(100, stack.size());
+		assertEquals(42, stack.getValue(42));
+		assertSame(test.number, stack.getType(99));
+		assertEquals(99, stack.pop().getValue());
+	}
+
+	@Test
+	public void getReturnsTheSameCell() {
+		TestProgram test = new TestProgram();
+		ValueStack stack = new ValueStack();
+		stack.push(1, test.number);
+		Value cell = stack.get(0);
+		assertSame(cell, stack.get(0));
+		cell.setValue(2);
+		assertEquals(2, stack.getValue(0));
+		assertSame(cell, stack.pop());
+	}
+
+	@Test
+	public void constantsAreCopiedBeforeTheyAreHandedOut() {
+		ValueStack stack = new ValueStack();
+		stack.push(Value.TRUE);
+		Value cell = stack.get(0);
+		assertNotSame(Value.TRUE, cell);
+		assertFalse(cell.isConstant());
+		cell.setValue(0);
+		assertEquals(1, Value.TRUE.getValue());
+	}
+
+	@Test
+	public void copySharesTheCells() {
+		TestProgram test = new TestProgram();
+		ValueStack stack = new ValueStack();
+		stack.push(1, test.number);
+		ValueStack copy = stack.copy();
+		copy.get(0).setValue(5);
+		assertEquals(5, stack.getValue(0));
+		copy.push(6, test.number);
+		assertEquals(1, stack.size());
+	}
+
+	@Test
+	public void putThroughAnAliasIsVisible() {
+		TestProgram test = new TestProgram();
+		test.main(new Assembler()
+				.number(5).op(GVM.LDS, 1).op(GVM.PUT).op(GVM.POP)
+				//Keep a second reference to x on the stack, then assign x
+				.op(GVM.LDS, 1)
+				.number(7).op(GVM.LDS, 1).op(GVM.PUT).op(GVM.POP)
+				.record(), "x");
+		assertEquals(Arrays.asList(7), test.run());
+	}
+
+}
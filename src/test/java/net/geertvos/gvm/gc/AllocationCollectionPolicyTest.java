@@ -0,0 +1,70 @@
+package net.geertvos.gvm.gc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import net.geertvos.gvm.core.ShapedObject;
+import net.geertvos.gvm.gc.GarbageCollectionEvent.Cause;
+import net.geertvos.gvm.program.GVMHeap;
+
+public class AllocationCollectionPolicyTest {
+
+	@Test
+	public void collectsAfterAllocationBudget() {
+		GVMHeap heap = new GVMHeap();
+		AllocationCollectionPolicy policy = new AllocationCollectionPolicy(10, 0.5, Integer.MAX_VALUE);
+		for (int i = 0; i < 9; i++) {
+			heap.addObject(new ShapedObject());
+		}
+		assertFalse(policy.shouldCollect(heap));
+		heap.addObject(new ShapedObject());
+		assertTrue(policy.shouldCollect(heap));
+		assertEquals(Cause.ALLOCATION, policy.getCause(heap));
+	}
+
+	@Test
+	public void backsOffWhenLiveSetExceedsHeapLimit() {
+		GVMHeap heap = new GVMHeap();
+		AllocationCollectionPolicy policy = new AllocationCollectionPolicy(200, 0.5, 2000);
+		//Nothing is garbage, so a collection never brings the heap below the limit
+		int collections = 0;
+		for (int i = 0; i < 10000; i++) {
+			heap.addObject(new ShapedObject());
+			if (policy.shouldCollect(heap)) {
+				collections++;
+				policy.collected(heap);
+			}
+		}
+		//Without back-off every check after reaching the limit would collect
+		assertTrue("Collections: " + collections, collections < 20);
+		assertFalse(policy.shouldCollect(heap));
+	}
+
+	@Test
+	public void limitDropsBackWhenLiveSetShrinks() {
+		GVMHeap heap = new GVMHeap();
+		AllocationCollectionPolicy policy = new AllocationCollectionPolicy(200, 0.5, 2000);
+		for (int i = 0; i < 3000; i++) {
+			heap.addObject(new ShapedObject());
+		}
+		assertTrue(policy.shouldCollect(heap));
+		assertEquals(Cause.HEAP_LIMIT, policy.getCause(heap));
+		policy.collected(heap);
+		assertFalse(policy.shouldCollect(heap));
+
+		for (int id = 0; id < 2500; id++) {
+			heap.free(id);
+		}
+		policy.collected(heap);
+		for (int i = 0; i < 1500; i++) {
+			heap.addObject(new ShapedObject());
+		}
+		assertEquals(2000, heap.size());
+		assertTrue(policy.shouldCollect(heap));
+		assertEquals(Cause.HEAP_LIMIT, policy.getCause(heap));
+	}
+
+}
@@ -0,0 +1,292 @@
+package net.geertvos.gvm.gc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import net.geertvos.gvm.core.AbstractType;
+import net.geertvos.gvm.core.GVM;
+import net.geertvos.gvm.core.GVMThread;
+import net.geertvos.gvm.core.ShapedObject;
+import net.geertvos.gvm.core.Value;
+import net.geertvos.gvm.gc.GarbageCollectionEvent.Cause;
+import net.geertvos.gvm.program.GVMContext;
+import net.geertvos.gvm.program.GVMHeap;
+import net.geertvos.gvm.program.GVMProgram;
+
+public class GarbageCollectorTest {
+
+	private static class ReferenceType extends AbstractType {
+
+		ReferenceType() {
+			super(Operations.GET);
+		}
+
+		@Override
+		public String getName() {
+			return "Reference";
+		}
+
+		@Override
+		public Value perform(GVMContext context, Operations op, Value thisValue, Value otherValue) {
+			return null;
+		}
+	}
+
+	@Test
+	public void collectorWithoutCauseOrListeners() {
+		final List<GVMHeap> collected = new ArrayList<GVMHeap>();
+		GarbageCollector gc = new GarbageCollector() {
+			@Override
+			public void collect(GVMHeap heap, Collection<GVMThread> threads) {
+				collected.add(heap);
+			}
+		};
+		GVMHeap heap = new GVMHeap();
+		gc.addListener(new GarbageCollectionStatistics());
+		gc.collect(heap, Collections.<GVMThread>emptyList(), Cause.HEAP_LIMIT);
+		assertEquals(1, collected.size());
+		assertFalse(gc.isCollecting());
+	}
+
+	@Test
+	public void incrementalCycleReportsOnceWhenFinished() {
+		GVMHeap heap = new GVMHeap();
+		for (int i = 0; i < 100; i++) {
+			heap.addObject(new ShapedObject());
+		}
+		Collection<GVMThread> threads = Collections.<GVMThread>emptyList();
+		IncrementalGarbageCollector gc = new IncrementalGarbageCollector();
+		final List<GarbageCollectionEvent> events = new ArrayList<GarbageCollectionEvent>();
+		gc.addListener(new GarbageCollectionListener() {
+			@Override
+			public void collected(GarbageCollectionEvent event) {
+				events.add(event);
+			}
+		});
+
+		gc.collect(heap, threads, Cause.ALLOCATION);
+		assertTrue(gc.isCollecting());
+		//A second request while the cycle runs is ignored
+		gc.collect(heap, threads, Cause.EXPLICIT);
+		assertTrue(events.isEmpty());
+
+		while (gc.isCollecting()) {
+			gc.step(heap, threads);
+		}
+		assertEquals(1, events.size());
+		assertEquals(Cause.ALLOCATION, events.get(0).getCause());
+		assertEquals(0, heap.size());
+	}
+
+	@Test
+	public void incrementalCycleKeepsObjectsAllocatedWhileItRuns() {
+		GVMHeap heap = new GVMHeap();
+		ReferenceType reference = new ReferenceType();
+		int root = heap.addObject(new ShapedObject());
+		int garbage = heap.addObject(new ShapedObject());
+		Collection<GVMThread> threads = roots(heap, root);
+		IncrementalGarbageCollector gc = new IncrementalGarbageCollector();
+
+		gc.collect(heap, threads, Cause.EXPLICIT);
+		int allocated = heap.addObject(new ShapedObject());
+		int stored = heap.addObject(new ShapedObject());
+		heap.getObject(root).setValue("stored", new Value(stored, reference));
+		while (gc.isCollecting()) {
+			gc.step(heap, threads);
+		}
+		assertTrue(heap.getObject(garbage) == null);
+		assertTrue(heap.getObject(allocated) != null);
+		assertTrue(heap.getObject(stored) != null);
+
+		//Not reachable, so the next cycle frees it
+		gc.collect(heap, threads, Cause.EXPLICIT);
+		while (gc.isCollecting()) {
+			gc.step(heap, threads);
+		}
+		assertTrue(heap.getObject(allocated) == null);
+		assertTrue(heap.getObject(stored) != null);
+	}
+
+	@Test
+	public void incrementalCycleSkipsIdsWithoutObject() {
+		GVMHeap heap = new GVMHeap();
+		ReferenceType reference = new ReferenceType();
+		int kept = heap.addObject(new ShapedObject());
+		int freed = heap.addObject(new ShapedObject());
+		heap.addObject(new ShapedObject());
+		heap.free(freed);
+		heap.getObject(kept).setValue("stale", new Value(freed, reference));
+
+		GVM gvm = new GVM(new GVMProgram("test", null, null), heap);
+		GVMThread thread = gvm.spawnThread();
+		thread.getStack().push(kept, reference);
+		//A stale id on the stack, shaded again when marking finishes
+		thread.getStack().push(freed, reference);
+		Collection<GVMThread> threads = Collections.singletonList(thread);
+
+		IncrementalGarbageCollector gc = new IncrementalGarbageCollector();
+		gc.collect(heap, threads, Cause.EXPLICIT);
+		while (gc.isCollecting()) {
+			gc.step(heap, threads);
+		}
+		assertEquals(1, heap.size());
+		assertTrue(heap.getObject(kept) != null);
+	}
+
+	@Test
+	public void generationalKeepsYoungObjectStoredWithSetValue() {
+		GVMHeap heap = new GVMHeap();
+		ReferenceType reference = new ReferenceType();
+		int root = heap.addObject(new ShapedObject());
+		GVM gvm = new GVM(new GVMProgram("test", null, null), heap);
+		GVMThread thread = gvm.spawnThread();
+		thread.getStack().push(root, reference);
+		Collection<GVMThread> threads = Collections.singletonList(thread);
+
+		GenerationalGarbageCollector gc = new GenerationalGarbageCollector();
+		gc.collect(heap, threads, Cause.EXPLICIT);
+		assertFalse(heap.isYoung(root));
+
+		//An old to young reference that is not stored by PUT
+		int child = heap.addObject(new ShapedObject());
+		heap.getObject(root).setValue("child", new Value(child, reference));
+		gc.collect(heap, threads, Cause.EXPLICIT);
+		assertTrue(heap.getObject(child) != null);
+		assertTrue(heap.addObject(new ShapedObject()) != child);
+	}
+
+	/**
+	 * A single thread with the given objects on its stack.
+	 */
+	private static Collection<GVMThread> roots(GVMHeap heap, int... ids) {
+		GVM gvm = new GVM(new GVMProgram("test", null, null), heap);
+		GVMThread thread = gvm.spawnThread();
+		ReferenceType reference = new ReferenceType();
+		for (int id : ids) {
+			thread.getStack().push(id, reference);
+		}
+		return Collections.singletonList(thread);
+	}
+
+	@Test
+	public void markAndSweepKeepsLongChains() {
+		GVMHeap heap = new GVMHeap();
+		ReferenceType reference = new ReferenceType();
+		int head = heap.addObject(new ShapedObject());
+		int last = head;
+		for (int i = 1; i < 100000; i++) {
+			int next = heap.addObject(new ShapedObject());
+			heap.getObject(last).setValue("next", new Value(next, reference));
+			last = next;
+		}
+		//An unreachable cycle
+		int a = heap.addObject(new ShapedObject());
+		int b = heap.addObject(new ShapedObject());
+		heap.getObject(a).setValue("next", new Value(b, reference));
+		heap.getObject(b).setValue("next", new Value(a, reference));
+
+		new MarkAndSweepGarbageCollector().collect(heap, roots(heap, head));
+		assertEquals(100000, heap.size());
+		assertTrue(heap.getObject(last) != null);
+		assertTrue(heap.getObject(a) == null);
+		assertTrue(heap.getObject(b) == null);
+	}
+
+	@Test
+	public void markAndSweepUsesTheCallStackScopes() {
+		GVMHeap heap = new GVMHeap();
+		int scope = heap.addObject(new ShapedObject());
+		int garbage = heap.addObject(new ShapedObject());
+		Collection<GVMThread> threads = roots(heap);
+		threads.iterator().next().getCallStack().push(0, 0, 0, 0, 0, scope, new ReferenceType());
+
+		new MarkAndSweepGarbageCollector().collect(heap, threads);
+		assertTrue(heap.getObject(scope) != null);
+		assertTrue(heap.getObject(garbage) == null);
+	}
+
+	@Test
+	public void minorCollectionLeavesOldGarbageUntilMajor() {
+		GVMHeap heap = new GVMHeap();
+		ReferenceType reference = new ReferenceType();
+		int root = heap.addObject(new ShapedObject());
+		int oldGarbage = heap.addObject(new ShapedObject());
+		Collection<GVMThread> threads = roots(heap, root);
+		GenerationalGarbageCollector gc = new GenerationalGarbageCollector(10);
+		final List<String> collections = new ArrayList<String>();
+		gc.addListener(new GarbageCollectionListener() {
+			@Override
+			public void collected(GarbageCollectionEvent event) {
+				collections.add(event.getCollection());
+			}
+		});
+		gc.collect(heap, threads);
+
+		int youngGarbage = heap.addObject(new ShapedObject());
+		gc.collect(heap, threads);
+		assertTrue(heap.getObject(youngGarbage) == null);
+		assertTrue(heap.getObject(oldGarbage) != null);
+
+		//Survivors fill the old generation beyond the threshold
+		for (int i = 0; i < 10; i++) {
+			heap.getObject(root).setValue("f" + i, new Value(heap.addObject(new ShapedObject()), reference));
+		}
+		gc.collect(heap, threads);
+		assertTrue(heap.getObject(oldGarbage) == null);
+		assertEquals(11, heap.size());
+		assertEquals(Arrays.asList("minor", "minor", "major"), collections);
+	}
+
+	/**
+	 * A heap with random references between the objects, the first ten objects are the roots.
+	 */
+	private static GVMHeap randomGraph(long seed) {
+		GVMHeap heap = new GVMHeap();
+		ReferenceType reference = new ReferenceType();
+		Random random = new Random(seed);
+		int count = 20000;
+		for (int i = 0; i < count; i++) {
+			heap.addObject(new ShapedObject());
+		}
+		for (int i = 0; i < count; i++) {
+			int edges = random.nextInt(3);
+			for (int e = 0; e < edges; e++) {
+				heap.getObject(i).setValue("f" + e, new Value(random.nextInt(count), reference));
+			}
+		}
+		return heap;
+	}
+
+	@Test
+	public void parallelMarkFreesTheSameObjects() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (long seed = 0; seed < 3; seed++) {
+				GVMHeap sequential = randomGraph(seed);
+				GVMHeap parallel = randomGraph(seed);
+				int[] roots = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 };
+				new MarkAndSweepGarbageCollector().collect(sequential, roots(sequential, roots));
+				new ParallelMarkAndSweepGarbageCollector(pool).collect(parallel, roots(parallel, roots));
+				assertTrue(sequential.size() > roots.length && sequential.size() < 20000);
+				assertEquals(sequential.size(), parallel.size());
+				for (int id = 0; id < 20000; id++) {
+					assertEquals(sequential.getObject(id) == null, parallel.getObject(id) == null);
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+}
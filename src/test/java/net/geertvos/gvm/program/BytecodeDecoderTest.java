@@ -0,0 +1,50 @@
+package net.geertvos.gvm.program;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import net.geertvos.gvm.core.GVM;
+import net.geertvos.gvm.core.TestProgram;
+import net.geertvos.gvm.core.TestProgram.Assembler;
+
+public class BytecodeDecoderTest {
+
+	@Test
+	public void jumpTargetsPointIntoDecodedCode() {
+		TestProgram test = new TestProgram();
+		Assembler code = new Assembler().jump(GVM.JMP, "end").number(1).label("end").op(GVM.HALT);
+		GVMCode decoded = BytecodeDecoder.decode(test.getProgram(), code.assemble());
+		int[] instructions = decoded.getInstructions();
+		//JMP <target>, LDC_D <value> <type>, HALT
+		assertEquals(6, instructions.length);
+		assertEquals(GVM.JMP, instructions[0]);
+		assertEquals(5, instructions[1]);
+		assertEquals(GVM.HALT, instructions[5]);
+		assertEquals(test.getProgram().addTypeConstant("Number"), instructions[4]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void jumpIntoAnOperandIsRejected() {
+		TestProgram test = new TestProgram();
+		Assembler code = new Assembler().op(GVM.JMP, 6).number(1).op(GVM.HALT);
+		BytecodeDecoder.decode(test.getProgram(), code.assemble());
+	}
+
+	@Test
+	public void loopRunsOnDecodedCode() {
+		TestProgram test = new TestProgram();
+		test.main(new Assembler()
+				.number(0).op(GVM.LDS, 1).op(GVM.PUT).op(GVM.POP)
+				.number(0).op(GVM.LDS, 2).op(GVM.PUT).op(GVM.POP)
+				.label("top").op(GVM.LDS, 1).number(10).op(GVM.LT).op(GVM.NOT).jump(GVM.CJMP, "end")
+				.op(GVM.LDS, 2).op(GVM.LDS, 1).op(GVM.ADD).op(GVM.LDS, 2).op(GVM.PUT).op(GVM.POP)
+				.op(GVM.LDS, 1).number(1).op(GVM.ADD).op(GVM.LDS, 1).op(GVM.PUT).op(GVM.POP)
+				.jump(GVM.JMP, "top")
+				.label("end").op(GVM.LDS, 2).record(), "i", "sum");
+		assertEquals(Arrays.asList(45), test.run());
+	}
+
+}
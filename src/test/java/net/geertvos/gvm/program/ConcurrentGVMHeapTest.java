@@ -0,0 +1,107 @@
+package net.geertvos.gvm.program;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import net.geertvos.gvm.core.AbstractType;
+import net.geertvos.gvm.core.ShapedObject;
+import net.geertvos.gvm.core.Type.Operations;
+import net.geertvos.gvm.core.Value;
+
+public class ConcurrentGVMHeapTest {
+
+	private static class ReferenceType extends AbstractType {
+
+		ReferenceType() {
+			super(Operations.GET);
+		}
+
+		@Override
+		public String getName() {
+			return "Reference";
+		}
+
+		@Override
+		public Value perform(GVMContext context, Operations op, Value thisValue, Value otherValue) {
+			return null;
+		}
+	}
+
+	@Test
+	public void concurrentAllocationsGetUniqueIds() throws Exception {
+		final ConcurrentGVMHeap heap = new ConcurrentGVMHeap();
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<int[]>> results = new ArrayList<Future<int[]>>();
+			for (int t = 0; t < 4; t++) {
+				results.add(pool.submit(new Callable<int[]>() {
+					@Override
+					public int[] call() {
+						int[] ids = new int[5000];
+						for (int i = 0; i < ids.length; i++) {
+							ids[i] = heap.addObject(new ShapedObject());
+						}
+						return ids;
+					}
+				}));
+			}
+			Set<Integer> ids = new HashSet<Integer>();
+			for (Future<int[]> result : results) {
+				for (int id : result.get()) {
+					assertTrue(ids.add(id));
+					assertTrue(heap.getObject(id) != null);
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		assertEquals(20000, heap.size());
+		assertEquals(20000, heap.getAllocationCount());
+	}
+
+	@Test
+	public void countersFollowFreeAndSweep() {
+		ConcurrentGVMHeap heap = new ConcurrentGVMHeap();
+		for (int i = 0; i < 100; i++) {
+			heap.addObject(new ShapedObject());
+		}
+		heap.free(0);
+		heap.free(0);
+		assertEquals(99, heap.size());
+		long[] marks = new long[2];
+		marks[0] = 0xFFL;
+		assertEquals(92, heap.sweep(marks));
+		assertEquals(7, heap.size());
+		assertEquals(100, heap.getAllocationCount());
+	}
+
+	@Test
+	public void writeBarrierRecordsOnlyWhileTracking() {
+		ConcurrentGVMHeap heap = new ConcurrentGVMHeap();
+		ShapedObject object = new ShapedObject();
+		heap.addObject(new ShapedObject());
+		int young = heap.addObject(object);
+		Value reference = new Value(young, new ReferenceType());
+		heap.recordWrite(reference);
+		assertTrue(heap.getRememberedSet().isEmpty());
+
+		heap.setGenerational(true);
+		young = heap.addObject(new ShapedObject());
+		reference = new Value(young, new ReferenceType());
+		heap.recordWrite(reference);
+		assertFalse(heap.getRememberedSet().isEmpty());
+	}
+
+}
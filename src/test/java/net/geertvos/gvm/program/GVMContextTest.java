@@ -0,0 +1,57 @@
+package net.geertvos.gvm.program;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.geertvos.gvm.bridge.NativeMethodWrapper;
+import net.geertvos.gvm.core.GVM;
+import net.geertvos.gvm.core.TestProgram;
+import net.geertvos.gvm.core.TestProgram.Assembler;
+import net.geertvos.gvm.core.Value;
+
+public class GVMContextTest {
+
+	@Test
+	public void contextIsCreatedOncePerThread() {
+		TestProgram test = new TestProgram();
+		final List<GVMContext> contexts = Collections.synchronizedList(new ArrayList<GVMContext>());
+		int index = test.getProgram().add(new NativeMethodWrapper() {
+			@Override
+			public Value invoke(List<Value> arguments, GVMContext context) {
+				contexts.add(context);
+				return Value.UNDEFINED;
+			}
+
+			@Override
+			public int argumentCount() {
+				return 0;
+			}
+		});
+		test.main(new Assembler()
+				.function(index).op(GVM.NATIVE).op(GVM.POP)
+				.function(index).op(GVM.NATIVE).op(GVM.POP)
+				.op(GVM.FORK).jump(GVM.CJMP, "child").op(GVM.HALT)
+				.label("child").function(index).op(GVM.NATIVE).op(GVM.POP));
+		GVM gvm = new GVM(test.getProgram());
+		test.run(gvm);
+
+		assertEquals(3, contexts.size());
+		GVMContext main = contexts.get(0);
+		GVMContext child = contexts.get(2);
+		assertSame(main, contexts.get(1));
+		assertNotSame(main, child);
+		assertNotSame(main.getThread(), child.getThread());
+		assertSame(main, main.getThread().getContext());
+		assertSame(child, child.getThread().getContext());
+		assertSame(gvm, child.getGVM());
+		assertSame(gvm.getHeap(), child.getHeap());
+	}
+
+}
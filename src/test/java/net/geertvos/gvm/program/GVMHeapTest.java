@@ -0,0 +1,89 @@
+package net.geertvos.gvm.program;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import net.geertvos.gvm.core.GVMObject;
+import net.geertvos.gvm.core.ShapedObject;
+
+public class GVMHeapTest {
+
+	@Test
+	public void freedIdsAreReused() {
+		GVMHeap heap = new GVMHeap();
+		int first = heap.addObject(new ShapedObject());
+		int second = heap.addObject(new ShapedObject());
+		heap.free(first);
+		assertNull(heap.getObject(first));
+		//Freeing twice does not hand out the id twice
+		heap.free(first);
+		assertEquals(1, heap.size());
+
+		GVMObject object = new ShapedObject();
+		assertEquals(first, heap.addObject(object));
+		assertSame(object, heap.getObject(first));
+		assertEquals(second + 1, heap.addObject(new ShapedObject()));
+		assertEquals(3, heap.getHighWaterMark());
+		assertEquals(4, heap.getAllocationCount());
+	}
+
+	@Test
+	public void tableGrowsBeyondTheInitialCapacity() {
+		GVMHeap heap = new GVMHeap();
+		GVMObject[] objects = new GVMObject[5000];
+		for (int i = 0; i < objects.length; i++) {
+			objects[i] = new ShapedObject();
+			assertEquals(i, heap.addObject(objects[i]));
+		}
+		assertEquals(objects.length, heap.size());
+		for (int i = 0; i < objects.length; i++) {
+			assertSame(objects[i], heap.getObject(i));
+		}
+	}
+
+	@Test
+	public void unknownIdsHaveNoObject() {
+		GVMHeap heap = new GVMHeap();
+		heap.addObject(new ShapedObject());
+		assertNull(heap.getObject(-1));
+		assertNull(heap.getObject(1));
+		assertNull(heap.getObject(100000));
+		assertNull(heap.getObject("0"));
+		assertSame(heap.getObject(0), heap.getObject(Integer.valueOf(0)));
+	}
+
+	@Test
+	public void sweepFreesUnmarkedObjects() {
+		GVMHeap heap = new GVMHeap();
+		for (int i = 0; i < 130; i++) {
+			heap.addObject(new ShapedObject());
+		}
+		long[] marks = new long[3];
+		for (int id : Arrays.asList(0, 63, 64, 129)) {
+			marks[id >>> 6] |= 1L << id;
+		}
+		assertEquals(126, heap.sweep(marks));
+		assertEquals(4, heap.size());
+		assertNull(heap.getObject(1));
+		assertNotNull(heap.getObject(129));
+		assertEquals(130, heap.getHighWaterMark());
+	}
+
+	@Test
+	public void clearEmptiesTheTable() {
+		GVMHeap heap = new GVMHeap();
+		heap.addObject(new ShapedObject());
+		heap.addObject(new ShapedObject());
+		heap.clear();
+		assertEquals(0, heap.size());
+		assertNull(heap.getObject(0));
+		assertEquals(0, heap.addObject(new ShapedObject()));
+	}
+
+}
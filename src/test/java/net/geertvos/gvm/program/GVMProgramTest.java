@@ -0,0 +1,54 @@
+package net.geertvos.gvm.program;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import net.geertvos.gvm.core.GVM;
+import net.geertvos.gvm.core.TestProgram;
+import net.geertvos.gvm.core.TestProgram.Assembler;
+
+public class GVMProgramTest {
+
+	@Test
+	public void typeNamesShareOnePoolEntry() {
+		TestProgram test = new TestProgram();
+		GVMProgram program = test.getProgram();
+		int number = program.addTypeConstant("Number");
+		assertEquals(number, program.addTypeConstant("Number"));
+		assertSame(test.number, program.getTypeConstant(number));
+	}
+
+	@Test
+	public void typeConstantResolvesTypeRegisteredLater() {
+		TestProgram test = new TestProgram();
+		GVMProgram program = new GVMProgram("test", null, null);
+		int index = program.addTypeConstant("Number");
+		program.registerType(test.number);
+		assertSame(test.number, program.getTypeConstant(index));
+	}
+
+	@Test
+	public void loadedProgramRebuildsThePool() throws Exception {
+		final TestProgram test = new TestProgram();
+		test.main(new Assembler().object().op(GVM.POP).number(20).number(22).op(GVM.ADD).record());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GVMProgramSerializer.writeTo(test.getProgram(), out);
+		GVMProgram loaded = GVMProgramSerializer.readFrom(new ByteArrayInputStream(out.toByteArray()), null, null,
+				argumentCount -> test.getProgram().getNativeWrappers().get(0));
+		loaded.registerType(test.number);
+		loaded.registerType(test.string);
+		loaded.registerType(test.object);
+		assertEquals(Arrays.asList(42), test.run(new GVM(loaded)));
+		assertEquals(Arrays.asList(42), test.run());
+		//The pool is filled when the code is decoded, the types are not part of the binary
+		assertEquals(test.getProgram().getTypeConstants(), loaded.getTypeConstants());
+	}
+
+}
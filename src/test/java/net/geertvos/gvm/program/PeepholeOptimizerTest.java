@@ -0,0 +1,91 @@
+package net.geertvos.gvm.program;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import net.geertvos.gvm.core.GVM;
+import net.geertvos.gvm.core.Opcode;
+import net.geertvos.gvm.core.TestProgram;
+import net.geertvos.gvm.core.TestProgram.Assembler;
+
+public class PeepholeOptimizerTest {
+
+	/**
+	 * Stores x in the scope of main and reads it in a loop with GET, GETDYNAMIC and a call.
+	 */
+	private static TestProgram program() {
+		TestProgram test = new TestProgram();
+		int x = test.string("x");
+		test.main(new Assembler()
+				.number(5).ldc(x, "String").op(GVM.GETDYNAMIC).op(GVM.PUT).op(GVM.POP)
+				.number(0).op(GVM.LDS, 1).op(GVM.PUT).op(GVM.POP)
+				.label("top").op(GVM.LDS, 1).number(3).op(GVM.LT).op(GVM.NOT).jump(GVM.CJMP, "end")
+				.op(GVM.LDS, 0).ldc(x, "String").op(GVM.GET).record()
+				.op(GVM.LDS, 0).op(GVM.LDS, 1).function(1).op(GVM.INVOKE, 1).record()
+				.op(GVM.DUP).op(GVM.POP)
+				.op(GVM.LDS, 1).number(1).op(GVM.ADD).op(GVM.LDS, 1).op(GVM.PUT).op(GVM.POP)
+				.jump(GVM.JMP, "top")
+				.label("end"), "i");
+		//x + n, x is found in the scope of the caller
+		test.function(new Assembler()
+				.ldc(x, "String").op(GVM.GETDYNAMIC).op(GVM.LDS, 1).op(GVM.ADD).op(GVM.RETURN), TestProgram.parameters("n"));
+		return test;
+	}
+
+	private static Set<Integer> opcodes(GVMCode code) {
+		Set<Integer> opcodes = new HashSet<Integer>();
+		int[] instructions = code.getInstructions();
+		int pc = 0;
+		while (pc < instructions.length) {
+			opcodes.add(instructions[pc]);
+			pc += 1 + Opcode.forCode(instructions[pc]).getOperands().length;
+		}
+		return opcodes;
+	}
+
+	@Test
+	public void optimizedProgramGivesTheSameResult() {
+		TestProgram test = program();
+		assertEquals(Arrays.asList(5, 5, 5, 6, 5, 7), test.run());
+		test.getProgram().setOptimizing(true);
+		assertEquals(Arrays.asList(5, 5, 5, 6, 5, 7), test.run());
+	}
+
+	@Test
+	public void sequencesAreFusedIntoSuperinstructions() {
+		TestProgram test = program();
+		GVMProgram program = test.getProgram();
+		program.setOptimizing(true);
+		Set<Integer> main = opcodes(program.getCode(0));
+		assertTrue(main.contains((int) GVM.LDS_GET));
+		assertTrue(main.contains((int) GVM.LDC_INVOKE));
+		assertTrue(main.contains((int) GVM.LDC_GETDYNAMIC));
+		assertFalse(main.contains((int) GVM.DUP));
+		assertTrue(opcodes(program.getCode(1)).contains((int) GVM.LDC_GETDYNAMIC));
+		assertTrue(program.getCode(0).getInstructions().length < BytecodeDecoder.decode(program, program.getFunction(0)).getInstructions().length);
+	}
+
+	@Test
+	public void jumpTargetsAreNotFused() {
+		TestProgram test = new TestProgram();
+		//The loop jumps to the LDC_D, so LDS; LDC_D; GET can not become one instruction
+		test.main(new Assembler()
+				.number(0).op(GVM.LDS, 1).op(GVM.PUT).op(GVM.POP)
+				.op(GVM.LDS, 0)
+				.label("load").ldc(test.string("x"), "String").op(GVM.GET).op(GVM.POP)
+				.op(GVM.LDS, 1).number(1).op(GVM.ADD).op(GVM.LDS, 1).op(GVM.PUT).op(GVM.POP)
+				.op(GVM.LDS, 0).op(GVM.LDS, 1).number(2).op(GVM.LT).jump(GVM.CJMP, "load")
+				.op(GVM.POP).op(GVM.LDS, 1).record(), "i");
+		test.getProgram().setOptimizing(true);
+		assertEquals(Arrays.asList(2), test.run());
+		assertFalse(opcodes(test.getProgram().getCode(0)).contains((int) GVM.LDS_GET));
+	}
+
+}